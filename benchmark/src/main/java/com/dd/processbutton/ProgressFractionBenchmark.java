@@ -0,0 +1,70 @@
+package com.dd.processbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress conversions done on every {@code ProcessButton.setProgress} call.
+ * {@code steady*} keeps the value inside of the progress state, {@code transitions*} walks
+ * through normal, progress, complete and error values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressFractionBenchmark {
+
+    private static final int MIN = 0;
+    private static final int MAX = 100;
+    private static final long TOTAL = 734003200L;
+
+    private static final int[] TRANSITIONS = {0, 50, 100, -1, 0};
+
+    private final ProgressFraction fraction = new ProgressFraction();
+
+    private int progress;
+    private int transition;
+    private long bytes;
+    private boolean otherTransfer;
+
+    @Benchmark
+    public int steadyProgress() {
+        progress = progress % (MAX - 1) + 1;
+        return ProgressFraction.of(progress, MIN, MAX);
+    }
+
+    @Benchmark
+    public int transitionsProgress() {
+        transition = (transition + 1) % TRANSITIONS.length;
+        return ProgressFraction.of(TRANSITIONS[transition], MIN, MAX);
+    }
+
+    @Benchmark
+    public int steadyBytes() {
+        bytes = (bytes + 65536) % TOTAL;
+        int value = fraction.of(bytes, TOTAL);
+        return ProgressFraction.toProgress(bytes, TOTAL, value, MIN, MAX);
+    }
+
+    @Benchmark
+    public int steadyBytesChangingTotal() {
+        // worst case for the cached reciprocal: every call comes from another transfer
+        bytes = (bytes + 65536) % TOTAL;
+        otherTransfer = !otherTransfer;
+        long total = otherTransfer ? TOTAL + 1 : TOTAL;
+        int value = fraction.of(bytes, total);
+        return ProgressFraction.toProgress(bytes, total, value, MIN, MAX);
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.dd.processbutton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProgressStateMachine} updates as done by {@code ProcessButton.setProgress}, without
+ * the rendering. The scheduler only counts tasks, so auto-resume bookkeeping is included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressStateMachineBenchmark {
+
+    private static final int[] TRANSITIONS = {0, 50, 100, 0, 50, -1};
+
+    private ProgressStateMachine machine;
+
+    private int progress;
+    private int transition;
+    private int events;
+    private int posted;
+
+    @Setup
+    public void setUp() {
+        machine = new ProgressStateMachine(0, 100);
+        machine.setAutoResumeToNormalState(true);
+        machine.setListener(new ProgressStateMachine.Listener() {
+            @Override
+            public void onStateChanged(int oldState, int newState) {
+                events++;
+            }
+
+            @Override
+            public void onProgressChanged(int progress, int fraction) {
+                events++;
+            }
+        });
+        machine.setScheduler(new ProgressStateMachine.Scheduler() {
+            @Override
+            public boolean postDelayed(Runnable task, long delayMillis) {
+                posted++;
+                return true;
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                posted--;
+            }
+        });
+        machine.setProgress(1);
+    }
+
+    @Benchmark
+    public int steadyProgress() {
+        progress = progress % 98 + 1;
+        machine.setProgress(progress);
+        return events;
+    }
+
+    @Benchmark
+    public int transitions() {
+        transition = (transition + 1) % TRANSITIONS.length;
+        machine.setProgress(TRANSITIONS[transition]);
+        return events + posted;
+    }
+
+    @Benchmark
+    public boolean click() {
+        return machine.onClick();
+    }
+
+}
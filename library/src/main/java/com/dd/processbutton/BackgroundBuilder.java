@@ -11,11 +11,11 @@ import android.os.Build;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class BackgroundBuilder {
 
+    private static final int BACKGROUND = 1;
+    private static final int BACKGROUND_V21 = 2;
+
     private Context context;
 
     public BackgroundBuilder(Context context) {
@@ -23,145 +23,153 @@ public class BackgroundBuilder {
     }
 
     public Drawable createBackground(AttributeSet attributeSet) {
-        TypedArray attr = getTypedArray(attributeSet, R.styleable.FlatButton);
-        if (attr == null) {
-            return null;
-        }
-
-        try {
-            float defValue = getDimension(R.dimen.pb_library_corner_radius);
-            float cornerRadius = attr.getDimension(R.styleable.FlatButton_pb_cornerRadius, defValue);
-
-            if (Build.VERSION.SDK_INT >= 21) {
-                return setupDrawableV21(attr, cornerRadius);
+        return createBackground(ButtonStyleSpec.obtain(context, attributeSet, ButtonStyleSpec.TYPE_FLAT_BUTTON));
+    }
+
+    public Drawable createBackground(ButtonStyleSpec spec) {
+        return createBackground(spec.getNormalColor(), spec.getPressedColor(), spec.getDisabledColor(),
+                spec.getShadowColor(), spec.getCornerRadius());
+    }
+
+    /**
+     * Builds normal/pressed/disabled background or takes it from the process-wide cache.
+     * Returned drawable may share its state with other buttons, call {@link Drawable#mutate()}
+     * before changing it.
+     */
+    public Drawable createBackground(ColorStateList normalColor, ColorStateList pressedColor,
+                                     ColorStateList disabledColor, ColorStateList shadowColor,
+                                     float cornerRadius) {
+        boolean v21 = Build.VERSION.SDK_INT >= 21;
+        boolean withShadow = !v21 && Color.alpha(normalColor.getDefaultColor()) == 0xFF;
+
+        DrawableCache.Key key = new DrawableCache.Key(v21 ? BACKGROUND_V21 : BACKGROUND,
+                withShadow, cornerRadius, getDensityDpi(),
+                normalColor, pressedColor, disabledColor, shadowColor);
+        Drawable drawable = DrawableCache.get(context, key);
+        if (drawable == null) {
+            if (v21) {
+                drawable = setupDrawableV21(normalColor, pressedColor, disabledColor, cornerRadius);
             } else {
-                return setupDrawable(attr, cornerRadius);
+                drawable = setupDrawable(normalColor, pressedColor, disabledColor, shadowColor,
+                        withShadow, cornerRadius);
             }
-        } finally {
-            attr.recycle();
+            drawable = DrawableCache.put(context, key, drawable);
         }
+        return drawable;
+    }
+
+    /**
+     * Creates a copy of the shape drawable with given color and corner radius or takes it from
+     * the process-wide cache. Returned drawable may share its state with other buttons,
+     * call {@link Drawable#mutate()} before changing it.
+     */
+    public GradientDrawable createShapeDrawable(int id, ColorStateList color, float cornerRadius) {
+        DrawableCache.Key key = new DrawableCache.Key(id, false, cornerRadius, getDensityDpi(), color);
+        GradientDrawable drawable = (GradientDrawable) DrawableCache.get(context, key);
+        if (drawable == null) {
+            drawable = (GradientDrawable) getDrawable(id).mutate();
+            drawable.setCornerRadius(cornerRadius);
+            setColor(drawable, color);
+            drawable = (GradientDrawable) DrawableCache.put(context, key, drawable);
+        }
+        return drawable;
     }
 
+    /**
+     * Changes corner radius of all shapes in the drawable tree. The tree is mutated first,
+     * so drawables sharing its state are not affected.
+     */
     public void setCornerRadius(Drawable drawable, float cornerRadius) {
+        if (drawable == null) {
+            return;
+        }
+
+        drawable.mutate();
+        applyCornerRadius(drawable, cornerRadius);
+    }
+
+    private void applyCornerRadius(Drawable drawable, float cornerRadius) {
         if (drawable instanceof GradientDrawable) {
             ((GradientDrawable) drawable).setCornerRadius(cornerRadius);
-        } else if (drawable instanceof CustomStateListDrawable) {
-            for (Drawable inner : ((CustomStateListDrawable) drawable).drawables) {
-                setCornerRadius(inner, cornerRadius);
+        } else if (drawable instanceof DrawableContainer) {
+            Drawable.ConstantState state = drawable.getConstantState();
+            if (state instanceof DrawableContainer.DrawableContainerState) {
+                DrawableContainer.DrawableContainerState containerState =
+                        (DrawableContainer.DrawableContainerState) state;
+                for (int i = 0; i < containerState.getChildCount(); i++) {
+                    applyCornerRadius(containerState.getChild(i), cornerRadius);
+                }
             }
         } else if (drawable instanceof LayerDrawable) {
             LayerDrawable layerDrawable = (LayerDrawable) drawable;
             for (int i = 0; i < layerDrawable.getNumberOfLayers(); i++) {
-                setCornerRadius(layerDrawable.getDrawable(i), cornerRadius);
+                applyCornerRadius(layerDrawable.getDrawable(i), cornerRadius);
             }
         }
     }
 
-    private StateListDrawable setupDrawable(TypedArray attr, float cornerRadius) {
-        CustomStateListDrawable stateListDrawable = new CustomStateListDrawable();
+    private StateListDrawable setupDrawable(ColorStateList normalColor, ColorStateList pressedColor,
+                                            ColorStateList disabledColor, ColorStateList shadowColor,
+                                            boolean withShadow, float cornerRadius) {
+        StateListDrawable stateListDrawable = new StateListDrawable();
 
         stateListDrawable.addState(new int[]{-android.R.attr.state_enabled},
-                createDisabledDrawable(attr, cornerRadius));
+                createShapeDrawable(R.drawable.rect_disabled, disabledColor, cornerRadius));
         stateListDrawable.addState(new int[]{android.R.attr.state_pressed},
-                createPressedDrawable(attr, cornerRadius));
+                createShapeDrawable(R.drawable.rect_pressed, pressedColor, cornerRadius));
         stateListDrawable.addState(new int[]{android.R.attr.state_focused},
-                createPressedDrawable(attr, cornerRadius));
+                createShapeDrawable(R.drawable.rect_pressed, pressedColor, cornerRadius));
         stateListDrawable.addState(new int[]{android.R.attr.state_selected},
-                createPressedDrawable(attr, cornerRadius));
-        stateListDrawable.addState(new int[]{},
-                createNormalDrawable(attr, cornerRadius));
+                createShapeDrawable(R.drawable.rect_pressed, pressedColor, cornerRadius));
+
+        Drawable normalDrawable;
+        if (withShadow) {
+            normalDrawable = createNormalDrawableWithShadow(normalColor, shadowColor, cornerRadius);
+        } else {
+            normalDrawable = createShapeDrawable(R.drawable.rect_normal, normalColor, cornerRadius);
+        }
+        stateListDrawable.addState(new int[]{}, normalDrawable);
 
         return stateListDrawable;
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private Drawable setupDrawableV21(TypedArray attr, float cornerRadius) {
-        CustomStateListDrawable stateListDrawable = new CustomStateListDrawable();
+    private Drawable setupDrawableV21(ColorStateList normalColor, ColorStateList pressedColor,
+                                      ColorStateList disabledColor, float cornerRadius) {
+        StateListDrawable stateListDrawable = new StateListDrawable();
 
         stateListDrawable.addState(new int[]{-android.R.attr.state_enabled},
-                createDisabledDrawable(attr, cornerRadius));
+                createShapeDrawable(R.drawable.rect_disabled, disabledColor, cornerRadius));
         stateListDrawable.addState(new int[]{},
-                createNormalDrawable(attr, cornerRadius));
-
-        int blueDark = getColor(R.color.pb_library_blue_pressed);
-        ColorStateList color = getColor(attr, R.styleable.FlatButton_pb_colorPressed, blueDark);
+                createShapeDrawable(R.drawable.rect_normal, normalColor, cornerRadius));
 
         GradientDrawable mask = new GradientDrawable();
         mask.setShape(GradientDrawable.RECTANGLE);
         mask.setCornerRadius(cornerRadius);
         mask.setColor(Color.WHITE);
-        return new RippleDrawable(color, stateListDrawable, mask);
-    }
-
-    private Drawable createNormalDrawable(TypedArray attr, float cornerRadius) {
-        boolean withoutShadow = Build.VERSION.SDK_INT >= 21;
-        if (!withoutShadow) {
-            int blueNormal = getColor(R.color.pb_library_blue_normal);
-            ColorStateList normalColor = getColor(attr, R.styleable.FlatButton_pb_colorNormal, blueNormal);
-            int defaultColor = normalColor.getDefaultColor();
-            withoutShadow = Color.alpha(defaultColor) != 0xFF;
-        }
-
-        if (withoutShadow) {
-            return createNormalDrawableWithoutShadow(attr, cornerRadius);
-        } else {
-            return createNormalDrawableWithShadow(attr, cornerRadius);
-        }
+        return new RippleDrawable(pressedColor, stateListDrawable, mask);
     }
 
-    private Drawable createNormalDrawableWithoutShadow(TypedArray attr, float cornerRadius) {
-        GradientDrawable drawableNormal =
-                (GradientDrawable) getDrawable(R.drawable.rect_normal).mutate();
-        drawableNormal.setCornerRadius(cornerRadius);
-        int blueNormal = getColor(R.color.pb_library_blue_normal);
-        setColor(drawableNormal, attr, R.styleable.FlatButton_pb_colorNormal, blueNormal);
-        return drawableNormal;
-    }
-
-    private Drawable createNormalDrawableWithShadow(TypedArray attr, float cornerRadius) {
-        if (Build.VERSION.SDK_INT >= 21) {
-            return createNormalDrawableWithoutShadow(attr, cornerRadius);
-        }
-
+    private Drawable createNormalDrawableWithShadow(ColorStateList normalColor, ColorStateList shadowColor,
+                                                    float cornerRadius) {
         LayerDrawable drawableNormal =
                 (LayerDrawable) getDrawable(R.drawable.rect_normal_with_shadow).mutate();
 
         GradientDrawable drawableTop =
                 (GradientDrawable) drawableNormal.getDrawable(0).mutate();
         drawableTop.setCornerRadius(cornerRadius);
-
-        int shadowColor = getColor(R.color.pb_library_shadow);
-        setColor(drawableTop, attr, R.styleable.FlatButton_pb_colorShadow, shadowColor);
+        setColor(drawableTop, shadowColor);
 
         GradientDrawable drawableBottom =
                 (GradientDrawable) drawableNormal.getDrawable(1).mutate();
         drawableBottom.setCornerRadius(cornerRadius);
+        setColor(drawableBottom, normalColor);
 
-        int blueNormal = getColor(R.color.pb_library_blue_normal);
-        setColor(drawableBottom, attr, R.styleable.FlatButton_pb_colorNormal, blueNormal);
         return drawableNormal;
     }
 
-    private Drawable createPressedDrawable(TypedArray attr, float cornerRadius) {
-        GradientDrawable drawablePressed =
-                (GradientDrawable) getDrawable(R.drawable.rect_pressed).mutate();
-        drawablePressed.setCornerRadius(cornerRadius);
-
-        int blueDark = getColor(R.color.pb_library_blue_pressed);
-        setColor(drawablePressed, attr, R.styleable.FlatButton_pb_colorPressed, blueDark);
-
-        return drawablePressed;
-    }
-
-    private Drawable createDisabledDrawable(TypedArray attr, float cornerRadius) {
-        GradientDrawable drawableDisabled =
-                (GradientDrawable) getDrawable(R.drawable.rect_disabled).mutate();
-        drawableDisabled.setCornerRadius(cornerRadius);
-
-        int blueDisabled = getColor(R.color.pb_library_blue_disabled);
-        setColor(drawableDisabled, attr, R.styleable.FlatButton_pb_colorPressed, blueDisabled);
-
-        return drawableDisabled;
+    private int getDensityDpi() {
+        return context.getResources().getDisplayMetrics().densityDpi;
     }
 
     public float getDimension(int id) {
@@ -226,16 +234,4 @@ public class BackgroundBuilder {
         }
         view.setPadding(pL, pT, pR, pB);
     }
-
-    private static class CustomStateListDrawable extends StateListDrawable {
-
-        List<Drawable> drawables = new ArrayList<>();
-
-        @Override
-        public void addState(int[] stateSet, Drawable drawable) {
-            super.addState(stateSet, drawable);
-            drawables.add(drawable);
-        }
-
-    }
 }
@@ -0,0 +1,364 @@
+package com.dd.processbutton;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.support.v4.util.LruCache;
+import android.util.AttributeSet;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Immutable result of parsing button attributes. Specs are cached by style resource id or by
+ * the contents of the {@link AttributeSet} together with the theme and configuration they
+ * were resolved in, so repeated inflation of the same layout (e.g. list rows) doesn't touch
+ * {@link TypedArray}s at all.
+ */
+public final class ButtonStyleSpec {
+
+    public static final int TYPE_FLAT_BUTTON = 0;
+    public static final int TYPE_PROCESS_BUTTON = 1;
+    public static final int TYPE_ACTION_PROCESS_BUTTON = 2;
+
+    private static final int MAX_CACHE_SIZE = 64;
+
+    private static final LruCache<Key, ButtonStyleSpec> cache = new LruCache<>(MAX_CACHE_SIZE);
+
+    private final float cornerRadius;
+    private final boolean roundCorners;
+    private final ColorStateList normalColor;
+    private final ColorStateList pressedColor;
+    private final ColorStateList disabledColor;
+    private final ColorStateList shadowColor;
+
+    private final CharSequence loadingText;
+    private final CharSequence completeText;
+    private final CharSequence errorText;
+    private final ColorStateList progressColor;
+    private final ColorStateList completeColor;
+    private final ColorStateList errorColor;
+    private final boolean blockClicksWhenLoading;
+    private final boolean autoResumeToNormalState;
+    private final int autoResumeToNormalStateDelay;
+
+    private final int[] endlessProgressColors;
+    private final int maxFps;
+
+    /**
+     * Returns the spec for a view inflated with given attributes. {@code attributeSet} may be
+     * null, then the spec contains library defaults.
+     *
+     * @param type one of {@link #TYPE_FLAT_BUTTON}, {@link #TYPE_PROCESS_BUTTON},
+     * {@link #TYPE_ACTION_PROCESS_BUTTON}, defines which attributes are parsed
+     */
+    public static ButtonStyleSpec obtain(Context context, AttributeSet attributeSet, int type) {
+        Key key = Key.of(context, attributeSet, type);
+        ButtonStyleSpec spec = cache.get(key);
+        if (spec == null) {
+            spec = new ButtonStyleSpec(context, attributeSet, 0, type);
+            cache.put(key.retain(), spec);
+        }
+        return spec;
+    }
+
+    /**
+     * Returns the spec for a style resource.
+     *
+     * @see #obtain(Context, AttributeSet, int)
+     */
+    public static ButtonStyleSpec obtain(Context context, int styleRes, int type) {
+        Key key = Key.of(context, styleRes, type);
+        ButtonStyleSpec spec = cache.get(key);
+        if (spec == null) {
+            spec = new ButtonStyleSpec(context, null, styleRes, type);
+            cache.put(key.retain(), spec);
+        }
+        return spec;
+    }
+
+    private ButtonStyleSpec(Context context, AttributeSet attributeSet, int styleRes, int type) {
+        Resources res = context.getResources();
+
+        float cornerRadius = res.getDimension(R.dimen.pb_library_corner_radius);
+        boolean roundCorners = false;
+        ColorStateList normalColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_blue_normal));
+        ColorStateList pressedColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_blue_pressed));
+        ColorStateList disabledColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_blue_disabled));
+        ColorStateList shadowColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_shadow));
+
+        TypedArray attr = obtainAttributes(context, attributeSet, styleRes, R.styleable.FlatButton);
+        if (attr != null) {
+            try {
+                cornerRadius = attr.getDimension(R.styleable.FlatButton_pb_cornerRadius, cornerRadius);
+                roundCorners = attr.getBoolean(R.styleable.FlatButton_pb_roundCorners, roundCorners);
+                normalColor = getColor(attr, R.styleable.FlatButton_pb_colorNormal, normalColor);
+                pressedColor = getColor(attr, R.styleable.FlatButton_pb_colorPressed, pressedColor);
+                disabledColor = getColor(attr, R.styleable.FlatButton_pb_colorPressed, disabledColor);
+                shadowColor = getColor(attr, R.styleable.FlatButton_pb_colorShadow, shadowColor);
+            } finally {
+                attr.recycle();
+            }
+        }
+
+        this.cornerRadius = cornerRadius;
+        this.roundCorners = roundCorners;
+        this.normalColor = normalColor;
+        this.pressedColor = pressedColor;
+        this.disabledColor = disabledColor;
+        this.shadowColor = shadowColor;
+
+        CharSequence loadingText = null;
+        CharSequence completeText = null;
+        CharSequence errorText = null;
+        ColorStateList progressColor = null;
+        ColorStateList completeColor = null;
+        ColorStateList errorColor = null;
+        boolean blockClicksWhenLoading = false;
+        boolean autoResumeToNormalState = false;
+        int autoResumeToNormalStateDelay = 2000;
+
+        if (type >= TYPE_PROCESS_BUTTON) {
+            progressColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_purple_progress));
+            completeColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_green_complete));
+            errorColor = ColorStateList.valueOf(res.getColor(R.color.pb_library_red_error));
+
+            attr = obtainAttributes(context, attributeSet, styleRes, R.styleable.ProcessButton);
+            if (attr != null) {
+                try {
+                    loadingText = attr.getText(R.styleable.ProcessButton_pb_textProgress);
+                    completeText = attr.getText(R.styleable.ProcessButton_pb_textComplete);
+                    errorText = attr.getText(R.styleable.ProcessButton_pb_textError);
+                    blockClicksWhenLoading = attr.getBoolean(R.styleable.ProcessButton_pb_blockClicksWhenLoading, blockClicksWhenLoading);
+                    autoResumeToNormalState = attr.getBoolean(R.styleable.ProcessButton_pb_autoResumeToNormal, autoResumeToNormalState);
+                    autoResumeToNormalStateDelay = attr.getInt(R.styleable.ProcessButton_pb_autoResumeToNormalDelay, autoResumeToNormalStateDelay);
+                    progressColor = getColor(attr, R.styleable.ProcessButton_pb_colorProgress, progressColor);
+                    completeColor = getColor(attr, R.styleable.ProcessButton_pb_colorComplete, completeColor);
+                    errorColor = getColor(attr, R.styleable.ProcessButton_pb_colorError, errorColor);
+                } finally {
+                    attr.recycle();
+                }
+            }
+        }
+
+        this.loadingText = loadingText;
+        this.completeText = completeText;
+        this.errorText = errorText;
+        this.progressColor = progressColor;
+        this.completeColor = completeColor;
+        this.errorColor = errorColor;
+        this.blockClicksWhenLoading = blockClicksWhenLoading;
+        this.autoResumeToNormalState = autoResumeToNormalState;
+        this.autoResumeToNormalStateDelay = autoResumeToNormalStateDelay;
+
+        int[] endlessProgressColors = null;
+        int maxFps = 0;
+        if (type >= TYPE_ACTION_PROCESS_BUTTON) {
+            endlessProgressColors = new int[] {
+                    res.getColor(R.color.pb_library_holo_blue_bright),
+                    res.getColor(R.color.pb_library_holo_green_light),
+                    res.getColor(R.color.pb_library_holo_orange_light),
+                    res.getColor(R.color.pb_library_holo_red_light)
+            };
+
+            attr = obtainAttributes(context, attributeSet, styleRes, R.styleable.ActionProcessButton);
+            if (attr != null) {
+                try {
+                    endlessProgressColors[0] = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_1, endlessProgressColors[0]);
+                    endlessProgressColors[1] = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_2, endlessProgressColors[1]);
+                    endlessProgressColors[2] = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_3, endlessProgressColors[2]);
+                    endlessProgressColors[3] = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_4, endlessProgressColors[3]);
+                    maxFps = attr.getInt(R.styleable.ActionProcessButton_pb_maxFps, maxFps);
+                } finally {
+                    attr.recycle();
+                }
+            }
+        }
+
+        this.endlessProgressColors = endlessProgressColors;
+        this.maxFps = maxFps;
+    }
+
+    private static TypedArray obtainAttributes(Context context, AttributeSet attributeSet, int styleRes, int[] attrs) {
+        if (attributeSet != null) {
+            return context.obtainStyledAttributes(attributeSet, attrs, 0, 0);
+        } else if (styleRes != 0) {
+            return context.obtainStyledAttributes(styleRes, attrs);
+        } else {
+            return null;
+        }
+    }
+
+    private static ColorStateList getColor(TypedArray attr, int index, ColorStateList defaultColor) {
+        ColorStateList result = null;
+        if (attr.hasValue(index)) {
+            result = attr.getColorStateList(index);
+        }
+        return result != null ? result : defaultColor;
+    }
+
+    public float getCornerRadius() {
+        return cornerRadius;
+    }
+
+    public boolean isRoundCorners() {
+        return roundCorners;
+    }
+
+    public ColorStateList getNormalColor() {
+        return normalColor;
+    }
+
+    public ColorStateList getPressedColor() {
+        return pressedColor;
+    }
+
+    public ColorStateList getDisabledColor() {
+        return disabledColor;
+    }
+
+    public ColorStateList getShadowColor() {
+        return shadowColor;
+    }
+
+    public CharSequence getLoadingText() {
+        return loadingText;
+    }
+
+    public CharSequence getCompleteText() {
+        return completeText;
+    }
+
+    public CharSequence getErrorText() {
+        return errorText;
+    }
+
+    public ColorStateList getProgressColor() {
+        return progressColor;
+    }
+
+    public ColorStateList getCompleteColor() {
+        return completeColor;
+    }
+
+    public ColorStateList getErrorColor() {
+        return errorColor;
+    }
+
+    public boolean isBlockClicksWhenLoading() {
+        return blockClicksWhenLoading;
+    }
+
+    public boolean isAutoResumeToNormalState() {
+        return autoResumeToNormalState;
+    }
+
+    public int getAutoResumeToNormalStateDelay() {
+        return autoResumeToNormalStateDelay;
+    }
+
+    /**
+     * @return copy of four endless progress colors of {@link #TYPE_ACTION_PROCESS_BUTTON} spec
+     */
+    public int[] getEndlessProgressColors() {
+        return endlessProgressColors != null ? endlessProgressColors.clone() : null;
+    }
+
+    public int getEndlessProgressColor(int index) {
+        return endlessProgressColors[index];
+    }
+
+    /**
+     * @return max frame rate of the endless progress indicator, 0 if not limited
+     */
+    public int getMaxFps() {
+        return maxFps;
+    }
+
+    private static final class Key {
+
+        private final int type;
+        private final int styleRes;
+        // live configuration of the resources in lookup keys, a copy in cached ones
+        private final Configuration configuration;
+        // pb_* values may come from the theme directly or through ?attr references
+        private final Reference<Resources.Theme> theme;
+        private final int[] attributeNames;
+        private final String[] attributeValues;
+        private final int hashCode;
+
+        static Key of(Context context, int styleRes, int type) {
+            return new Key(type, styleRes, context.getResources().getConfiguration(),
+                    new WeakReference<>(context.getTheme()), null, null);
+        }
+
+        static Key of(Context context, AttributeSet attributeSet, int type) {
+            if (attributeSet == null) {
+                return of(context, 0, type);
+            }
+
+            int count = attributeSet.getAttributeCount();
+            int[] names = new int[count];
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = attributeSet.getAttributeNameResource(i);
+                values[i] = attributeSet.getAttributeValue(i);
+            }
+            return new Key(type, attributeSet.getStyleAttribute(), context.getResources().getConfiguration(),
+                    new WeakReference<>(context.getTheme()), names, values);
+        }
+
+        private Key(int type, int styleRes, Configuration configuration, Reference<Resources.Theme> theme,
+                    int[] attributeNames, String[] attributeValues) {
+            this.type = type;
+            this.styleRes = styleRes;
+            this.configuration = configuration;
+            this.theme = theme;
+            this.attributeNames = attributeNames;
+            this.attributeValues = attributeValues;
+
+            int result = type;
+            result = 31 * result + styleRes;
+            result = 31 * result + configuration.hashCode();
+            result = 31 * result + System.identityHashCode(theme.get());
+            result = 31 * result + Arrays.hashCode(attributeNames);
+            result = 31 * result + Arrays.hashCode(attributeValues);
+            this.hashCode = result;
+        }
+
+        /**
+         * @return key which is safe to keep in the cache, configuration of the resources
+         * is updated in place when it changes
+         */
+        Key retain() {
+            return new Key(type, styleRes, new Configuration(configuration), theme,
+                    attributeNames, attributeValues);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            Resources.Theme theme = this.theme.get();
+            return hashCode == key.hashCode
+                    && type == key.type
+                    && styleRes == key.styleRes
+                    && theme != null
+                    && theme == key.theme.get()
+                    && configuration.equals(key.configuration)
+                    && Arrays.equals(attributeNames, key.attributeNames)
+                    && Arrays.equals(attributeValues, key.attributeValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.dd.processbutton;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process-wide LRU cache of drawable {@link Drawable.ConstantState}s built by
+ * {@link BackgroundBuilder}. Buttons with the same colors and corner radius get
+ * {@link Drawable.ConstantState#newDrawable(Resources)} instances sharing one state,
+ * so anyone who changes a cached drawable must {@link Drawable#mutate()} it first.
+ */
+final class DrawableCache {
+
+    private static final int MAX_SIZE = 32;
+
+    private static final LruCache<Key, Drawable.ConstantState> cache = new LruCache<>(MAX_SIZE);
+
+    private static volatile boolean callbacksRegistered;
+
+    private DrawableCache() {
+    }
+
+    static Drawable get(Context context, Key key) {
+        Drawable.ConstantState state = cache.get(key);
+        return state != null ? state.newDrawable(context.getResources()) : null;
+    }
+
+    /**
+     * Caches state of the built drawable. The built instance is never handed out, it may be
+     * mutated already and {@link Drawable#mutate()} wouldn't detach it from the cached state.
+     *
+     * @return new drawable with the cached state, the built one if it has no state
+     */
+    static Drawable put(Context context, Key key, Drawable drawable) {
+        Drawable.ConstantState state = drawable.getConstantState();
+        if (state == null) {
+            return drawable;
+        }
+
+        registerCallbacks(context);
+        cache.put(key, state);
+        return state.newDrawable(context.getResources());
+    }
+
+    static void clear() {
+        cache.evictAll();
+    }
+
+    private static void registerCallbacks(Context context) {
+        if (callbacksRegistered) return;
+
+        synchronized (DrawableCache.class) {
+            if (callbacksRegistered) return;
+
+            Context appContext = context.getApplicationContext();
+            if (appContext == null) return;
+
+            appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    if (level >= TRIM_MEMORY_MODERATE
+                            || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                        clear();
+                    } else if (level >= TRIM_MEMORY_BACKGROUND
+                            || level == TRIM_MEMORY_RUNNING_LOW) {
+                        cache.trimToSize(MAX_SIZE / 2);
+                    }
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    clear();
+                }
+            });
+            callbacksRegistered = true;
+        }
+    }
+
+    static final class Key {
+
+        private final int type;
+        private final boolean withShadow;
+        private final float cornerRadius;
+        private final int densityDpi;
+        private final ColorStateList[] colors;
+        private final int hashCode;
+
+        /**
+         * @param type drawable resource id or another unique id of the drawable tree
+         */
+        Key(int type, boolean withShadow, float cornerRadius, int densityDpi, ColorStateList... colors) {
+            this.type = type;
+            this.withShadow = withShadow;
+            this.cornerRadius = cornerRadius;
+            this.densityDpi = densityDpi;
+            this.colors = colors;
+
+            int result = type;
+            result = 31 * result + (withShadow ? 1 : 0);
+            result = 31 * result + Float.floatToIntBits(cornerRadius);
+            result = 31 * result + densityDpi;
+            for (ColorStateList color : colors) {
+                result = 31 * result + (color != null ? color.getDefaultColor() : 0);
+            }
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            if (hashCode != key.hashCode
+                    || type != key.type
+                    || withShadow != key.withShadow
+                    || Float.compare(cornerRadius, key.cornerRadius) != 0
+                    || densityDpi != key.densityDpi
+                    || colors.length != key.colors.length) {
+                return false;
+            }
+
+            for (int i = 0; i < colors.length; i++) {
+                if (!sameColor(colors[i], key.colors[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameColor(ColorStateList first, ColorStateList second) {
+            if (first == second) return true;
+            if (first == null || second == null) return false;
+
+            // ColorStateList has no equals(), stateful lists are compared by identity
+            return !first.isStateful()
+                    && !second.isStateful()
+                    && first.getDefaultColor() == second.getDefaultColor();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -19,9 +19,10 @@ public class FlatButton extends Button {
     private float cornerRadius;
     private boolean roundCorners;
     private BackgroundBuilder backgroundBuilder;
+    private ButtonStyleSpec mStyleSpec;
 
     private boolean hasSavedText;
-    private String mSavedText;
+    private CharSequence mSavedText;
 
     public FlatButton(Context context) {
         super(context);
@@ -42,32 +43,34 @@ public class FlatButton extends Button {
         if (initialized) return;
 
         backgroundBuilder = new BackgroundBuilder(context);
+        mStyleSpec = ButtonStyleSpec.obtain(context, attrs, getStyleSpecType());
         if (attrs != null) {
-            initAttributes(attrs);
+            cornerRadius = mStyleSpec.getCornerRadius();
+            roundCorners = mStyleSpec.isRoundCorners();
+            mDrawable = backgroundBuilder.createBackground(mStyleSpec);
         } else {
             mDrawable = getBackground();
         }
 
-        mSavedText = getText().toString();
+        mSavedText = getText();
         setBackgroundCompat(mDrawable);
 
         initialized = true;
     }
 
-    private void initAttributes(AttributeSet attributeSet) {
-        TypedArray attr = backgroundBuilder.getTypedArray(attributeSet, R.styleable.FlatButton);
-        if (attr == null) {
-            return;
-        }
+    /**
+     * Defines which attributes are parsed into {@link #getStyleSpec()}. Called from the constructor.
+     */
+    protected int getStyleSpecType() {
+        return ButtonStyleSpec.TYPE_FLAT_BUTTON;
+    }
 
-        try {
-            float defValue = backgroundBuilder.getDimension(R.dimen.pb_library_corner_radius);
-            cornerRadius = attr.getDimension(R.styleable.FlatButton_pb_cornerRadius, defValue);
-            roundCorners = attr.getBoolean(R.styleable.FlatButton_pb_roundCorners, false);
-            mDrawable = backgroundBuilder.createBackground(attributeSet);
-        } finally {
-            attr.recycle();
-        }
+    /**
+     * @return parsed attributes this button was inflated with, library defaults if it was
+     * created from code
+     */
+    protected ButtonStyleSpec getStyleSpec() {
+        return mStyleSpec;
     }
 
     public boolean isRoundCorners() {
@@ -97,10 +100,32 @@ public class FlatButton extends Button {
     protected void saveTextIfNotYet() {
         if (!hasSavedText) {
             hasSavedText = true;
-            mSavedText = getText().toString();
+            // keep the reference, text is converted to String only when the state is saved
+            mSavedText = getText();
         }
     }
 
+    /**
+     * @return text shown in the normal state, differs from {@link #getText()} while another
+     * state shows its own text
+     */
+    protected CharSequence getNormalText() {
+        return hasSavedText ? mSavedText : getText();
+    }
+
+    /**
+     * Sets text shown by {@link #restoreText()} without touching the current text.
+     */
+    protected void setSavedText(CharSequence text) {
+        hasSavedText = true;
+        mSavedText = text;
+    }
+
+    protected void clearSavedText() {
+        hasSavedText = false;
+        mSavedText = null;
+    }
+
     protected void restoreText() {
         if (hasSavedText) {
             setText(mSavedText);
@@ -135,6 +160,13 @@ public class FlatButton extends Button {
         return backgroundBuilder.getDrawable(id);
     }
 
+    /**
+     * @see BackgroundBuilder#createShapeDrawable(int, ColorStateList, float)
+     */
+    protected GradientDrawable createShapeDrawable(int id, ColorStateList color) {
+        return backgroundBuilder.createShapeDrawable(id, color, getCornerRadius());
+    }
+
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
@@ -162,7 +194,7 @@ public class FlatButton extends Button {
     public Parcelable onSaveInstanceState() {
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
-        savedState.savedText = mSavedText;
+        savedState.savedText = mSavedText != null ? mSavedText.toString() : null;
         savedState.hasSavedText = hasSavedText;
 
         return savedState;
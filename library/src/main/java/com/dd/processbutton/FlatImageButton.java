@@ -39,7 +39,10 @@ public class FlatImageButton extends ImageButton {
 
         backgroundBuilder = new BackgroundBuilder(context);
         if (attrs != null) {
-            initAttributes(attrs);
+            ButtonStyleSpec spec = ButtonStyleSpec.obtain(context, attrs, ButtonStyleSpec.TYPE_FLAT_BUTTON);
+            cornerRadius = spec.getCornerRadius();
+            roundCorners = spec.isRoundCorners();
+            mDrawable = backgroundBuilder.createBackground(spec);
         } else {
             mDrawable = getBackground();
         }
@@ -49,22 +52,6 @@ public class FlatImageButton extends ImageButton {
         initialized = true;
     }
 
-    private void initAttributes(AttributeSet attributeSet) {
-        TypedArray attr = backgroundBuilder.getTypedArray(attributeSet, R.styleable.FlatButton);
-        if (attr == null) {
-            return;
-        }
-
-        try {
-            float defValue = backgroundBuilder.getDimension(R.dimen.pb_library_corner_radius);
-            cornerRadius = attr.getDimension(R.styleable.FlatButton_pb_cornerRadius, defValue);
-            roundCorners = attr.getBoolean(R.styleable.FlatButton_pb_roundCorners, false);
-            mDrawable = backgroundBuilder.createBackground(attributeSet);
-        } finally {
-            attr.recycle();
-        }
-    }
-
 
     public boolean isRoundCorners() {
         return roundCorners;
@@ -46,7 +46,9 @@ public class FlatToggleButton extends ToggleButton {
 
         backgroundBuilder = new BackgroundBuilder(context);
         if (attrs != null) {
-            initAttributes(attrs);
+            ButtonStyleSpec spec = ButtonStyleSpec.obtain(context, attrs, ButtonStyleSpec.TYPE_FLAT_BUTTON);
+            cornerRadius = spec.getCornerRadius();
+            mDrawable = backgroundBuilder.createBackground(spec);
         } else {
             mDrawable = getBackground();
         }
@@ -57,21 +59,6 @@ public class FlatToggleButton extends ToggleButton {
         initialized = true;
     }
 
-    private void initAttributes(AttributeSet attributeSet) {
-        TypedArray attr = backgroundBuilder.getTypedArray(attributeSet, R.styleable.FlatButton);
-        if (attr == null) {
-            return;
-        }
-
-        try {
-            float defValue = backgroundBuilder.getDimension(R.dimen.pb_library_corner_radius);
-            cornerRadius = attr.getDimension(R.styleable.FlatButton_pb_cornerRadius, defValue);
-            mDrawable = backgroundBuilder.createBackground(attributeSet);
-        } finally {
-            attr.recycle();
-        }
-    }
-
 
     public float getCornerRadius() {
         return cornerRadius;
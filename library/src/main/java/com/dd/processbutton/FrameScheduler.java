@@ -0,0 +1,115 @@
+package com.dd.processbutton;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an action at most once per display frame on the main thread. {@link #schedule()} can be
+ * called from any thread, repeated calls before the next frame are merged into one.
+ * Must be created on the main thread.
+ */
+abstract class FrameScheduler {
+
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private final Runnable action;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    static FrameScheduler create(Runnable action) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerScheduler(action);
+        } else {
+            return new HandlerScheduler(action);
+        }
+    }
+
+    FrameScheduler(Runnable action) {
+        this.action = action;
+    }
+
+    /**
+     * @return true if this call posted a new frame callback, false if one was already pending
+     */
+    boolean schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            post();
+            return true;
+        }
+        return false;
+    }
+
+    void cancel() {
+        if (scheduled.compareAndSet(true, false)) {
+            remove();
+        }
+    }
+
+    boolean isScheduled() {
+        return scheduled.get();
+    }
+
+    void doFrame() {
+        // reset before running so updates made by the action or by other threads meanwhile
+        // are picked up by the next frame
+        scheduled.set(false);
+        action.run();
+    }
+
+    abstract void post();
+
+    abstract void remove();
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerScheduler extends FrameScheduler implements Choreographer.FrameCallback {
+
+        private final Choreographer choreographer = Choreographer.getInstance();
+
+        ChoreographerScheduler(Runnable action) {
+            super(action);
+        }
+
+        @Override
+        void post() {
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        void remove() {
+            choreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            doFrame();
+        }
+    }
+
+    private static class HandlerScheduler extends FrameScheduler implements Runnable {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        HandlerScheduler(Runnable action) {
+            super(action);
+        }
+
+        @Override
+        void post() {
+            handler.postDelayed(this, FALLBACK_FRAME_DELAY);
+        }
+
+        @Override
+        void remove() {
+            handler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            doFrame();
+        }
+    }
+}
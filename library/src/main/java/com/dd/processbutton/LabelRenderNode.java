@@ -0,0 +1,49 @@
+package com.dd.processbutton;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.RenderNode;
+import android.os.Build;
+
+/**
+ * Display list of the button label. Recorded once and replayed on every progress frame, so
+ * a progress tick re-records only the progress draw ops instead of the whole text.
+ */
+@TargetApi(Build.VERSION_CODES.Q)
+final class LabelRenderNode {
+
+    private final RenderNode node = new RenderNode("ProcessButtonLabel");
+    private boolean dirty = true;
+
+    LabelRenderNode() {
+        // text is drawn in scrolled coordinates, it may lie outside of the node position
+        node.setClipToBounds(false);
+    }
+
+    void invalidate() {
+        dirty = true;
+    }
+
+    boolean isValid() {
+        return !dirty && node.hasDisplayList();
+    }
+
+    Canvas beginRecording(int width, int height) {
+        node.setPosition(0, 0, width, height);
+        return node.beginRecording(width, height);
+    }
+
+    void endRecording() {
+        node.endRecording();
+        dirty = false;
+    }
+
+    void draw(Canvas canvas) {
+        canvas.drawRenderNode(node);
+    }
+
+    void discard() {
+        node.discardDisplayList();
+        dirty = true;
+    }
+}
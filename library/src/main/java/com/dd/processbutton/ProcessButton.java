@@ -1,47 +1,132 @@
 package com.dd.processbutton;
 
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.res.ColorStateList;
 import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.LevelListDrawable;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.text.method.TransformationMethod;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.animation.DecelerateInterpolator;
 
 public abstract class ProcessButton extends FlatButton {
 
+    public enum State {
+        NORMAL, PROGRESS, COMPLETE, ERROR
+    }
+
+    /**
+     * Receives cost and activity of a button. All methods are called on the main thread
+     * from inside of the measured code, so they have to return quickly.
+     *
+     * @see ProcessButtonMetrics
+     */
+    public interface MetricsListener {
+
+        /**
+         * @param uptimeMillis {@link SystemClock#uptimeMillis()} of the change
+         */
+        void onStateChanged(ProcessButton button, State oldState, State newState, long uptimeMillis);
+
+        /**
+         * @param applied false if the update repeated the current value and changed nothing
+         * @param durationNanos time spent in {@code setProgress}, including state callbacks
+         */
+        void onProgressUpdate(ProcessButton button, boolean applied, long durationNanos);
+
+        void onDraw(ProcessButton button, long durationNanos);
+
+        /**
+         * Called when a frame produced by the running endless progress animation is drawn.
+         * Redraws of a paused or static indicator don't count.
+         */
+        void onEndlessFrame(ProcessButton button);
+    }
+
     private boolean initialized;
 
-    private int mProgress;
-    private int mMaxProgress;
-    private int mMinProgress;
+    // progress range, shared with ProcessButtonGroup which converts values off the main thread
+    static final int MIN_PROGRESS = 0;
+    static final int MAX_PROGRESS = 100;
+
+    // indexed by ProgressStateMachine state constants
+    private static final State[] STATES = {State.NORMAL, State.PROGRESS, State.COMPLETE, State.ERROR};
+
+    // levels of the state background, complete and error children are added on first use
+    private static final int LEVEL_NORMAL = 0;
+    private static final int LEVEL_COMPLETE = 1;
+    private static final int LEVEL_ERROR = 2;
+
+    private final ProgressStateMachine mStateMachine = new ProgressStateMachine(MIN_PROGRESS, MAX_PROGRESS);
+    private ProgressStateMachine.Scheduler mDefaultStateScheduler;
+    private State mState = State.NORMAL;
+
+    // fraction currently on screen, lags behind the set one while interpolating
+    private int mDrawnFraction;
 
+    private final Rect mDirtyRect = new Rect();
+
+    // created on first use with the current corner radius
     private GradientDrawable mProgressDrawable;
     private GradientDrawable mCompleteDrawable;
     private GradientDrawable mErrorDrawable;
 
+    private LevelListDrawable mStateBackground;
+    private final Drawable[] mStateBackgroundChildren = new Drawable[3];
+
+    private ColorStateList mProgressColor;
+    private ColorStateList mCompleteColor;
+    private ColorStateList mErrorColor;
+
     private CharSequence mLoadingText;
     private CharSequence mCompleteText;
     private CharSequence mErrorText;
 
-    private boolean blockClicksWhenLoading;
+    private boolean mStateTextDrawingEnabled;
+    // indexed by State ordinal, created when state text drawing is enabled
+    private StateLabel[] mStateLabels;
+    private StateLabel mShownLabel;
+
+    private boolean mStableWidthEnabled;
+    // texts and their widths by State ordinal, the normal text goes first
+    private CharSequence[] mStableWidthTexts;
+    private float[] mStableTextWidths;
+    private int mStableWidth;
+    private int mMinWidthBeforeStable;
+    private int mMaxWidthBeforeStable;
+
+    private ProgressSink mProgressSink;
+
+    private boolean mProgressInterpolationEnabled;
+    private TimeInterpolator mProgressInterpolator = new DecelerateInterpolator();
+    private float mProgressInterpolatorPeakSlope = getPeakSlope(mProgressInterpolator);
+    private float mMaxProgressVelocity = 1f;
+    private ValueAnimator mProgressAnimator;
+    private int mAnimationStartFraction;
+    private int mAnimationEndFraction;
+
+    // API 29+ only, created on the first hardware accelerated progress frame
+    private LabelRenderNode mLabelRenderNode;
 
     private OnClickListener onClickListener;
 
-    private boolean autoResumeToNormalState;
-    private boolean autoResumeTaskPosted;
-    private int autoResumeToNormalStateDelay = 2000;
-    private Runnable autoResumeToNormalStateTask = new Runnable() {
-        @Override
-        public void run() {
-            autoResumeTaskPosted = false;
-            if (isErrorState() || isCompleteState()) {
-                setProgress(0);
-            }
-        }
-    };
+    private MetricsListener mMetricsListener;
+    private boolean mProgressApplied;
 
     public ProcessButton(Context context) {
         super(context);
@@ -61,34 +146,55 @@ public abstract class ProcessButton extends FlatButton {
     private void init(Context context, AttributeSet attrs) {
         if (initialized) return;
 
-        mMinProgress = 0;
-        mMaxProgress = 100;
+        ButtonStyleSpec spec = getStyleSpec();
+        mLoadingText = spec.getLoadingText();
+        mCompleteText = spec.getCompleteText();
+        mErrorText = spec.getErrorText();
+        mStateMachine.setBlockClicksWhenLoading(spec.isBlockClicksWhenLoading());
+        mStateMachine.setAutoResumeToNormalState(spec.isAutoResumeToNormalState());
+        mStateMachine.setAutoResumeToNormalStateDelay(spec.getAutoResumeToNormalStateDelay());
+        mDefaultStateScheduler = new ProgressStateMachine.Scheduler() {
+            @Override
+            public boolean postDelayed(Runnable task, long delayMillis) {
+                Handler handler = getHandler();
+                return handler != null && handler.postDelayed(task, delayMillis);
+            }
 
-        mProgressDrawable = (GradientDrawable) getDrawable(R.drawable.rect_progress).mutate();
-        mProgressDrawable.setCornerRadius(getCornerRadius());
+            @Override
+            public void cancel(Runnable task) {
+                Handler handler = getHandler();
+                if (handler != null) {
+                    handler.removeCallbacks(task);
+                }
+            }
+        };
+        mStateMachine.setScheduler(mDefaultStateScheduler);
+        mStateMachine.setListener(new ProgressStateMachine.Listener() {
+            @Override
+            public void onStateChanged(int oldState, int newState) {
+                applyState(STATES[oldState], STATES[newState]);
+            }
 
-        mCompleteDrawable = (GradientDrawable) getDrawable(R.drawable.rect_complete).mutate();
-        mCompleteDrawable.setCornerRadius(getCornerRadius());
+            @Override
+            public void onProgressChanged(int progress, int fraction) {
+                mProgressApplied = true;
+                updateDrawnProgress(fraction);
+            }
+        });
 
-        mErrorDrawable = (GradientDrawable) getDrawable(R.drawable.rect_error).mutate();
-        mErrorDrawable.setCornerRadius(getCornerRadius());
+        mProgressColor = spec.getProgressColor();
+        mCompleteColor = spec.getCompleteColor();
+        mErrorColor = spec.getErrorColor();
 
-        if (attrs != null) {
-            initAttributes(attrs);
-        }
+        showStateBackground(LEVEL_NORMAL, getNormalDrawable());
 
         super.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (blockClicksWhenLoading && isProgressState()) {
+                if (!mStateMachine.onClick()) {
                     return;
                 }
 
-                if (autoResumeToNormalState
-                        && (isErrorState() || isCompleteState())) {
-                    setProgress(0);
-                }
-
                 if (onClickListener != null) {
                     onClickListener.onClick(v);
                 }
@@ -98,72 +204,424 @@ public abstract class ProcessButton extends FlatButton {
         initialized = true;
     }
 
-    private void initAttributes(AttributeSet attributeSet) {
-        TypedArray attr = getTypedArray(attributeSet, R.styleable.ProcessButton);
+    @Override
+    protected int getStyleSpecType() {
+        return ButtonStyleSpec.TYPE_PROCESS_BUTTON;
+    }
+
+    @Override
+    public void setCornerRadius(int cornerRadius) {
+        super.setCornerRadius(cornerRadius);
+
+        setCornerRadius(mProgressDrawable, cornerRadius);
+        setCornerRadius(mCompleteDrawable, cornerRadius);
+        setCornerRadius(mErrorDrawable, cornerRadius);
+    }
+
+    private static void setCornerRadius(GradientDrawable drawable, int cornerRadius) {
+        if (drawable != null) {
+            // drawable may share state with other buttons
+            drawable.mutate();
+            drawable.setCornerRadius(cornerRadius);
+        }
+    }
+
+    @Override
+    public void setOnClickListener(OnClickListener onClickListener) {
+        this.onClickListener = onClickListener;
+    }
+
+    public void setAutoResumeToNormalState(boolean autoResumeToNormalState) {
+        mStateMachine.setAutoResumeToNormalState(autoResumeToNormalState);
+    }
+
+    public void setBlockClicksWhenLoading(boolean blockClicksWhenLoading) {
+        mStateMachine.setBlockClicksWhenLoading(blockClicksWhenLoading);
+    }
+
+    public void setProgress(int progress) {
+        if (mMetricsListener == null) {
+            mStateMachine.setProgress(progress);
+            return;
+        }
+
+        long start = startProgressUpdate();
+        mStateMachine.setProgress(progress);
+        finishProgressUpdate(start);
+    }
 
-        if (attr == null) {
+    /**
+     * Sets progress of a transfer measured in arbitrary units, e.g. bytes. Negative
+     * {@code current} switches to the error state, zero to the normal state and
+     * {@code current >= total} to the complete state. {@link #getProgress()} reports
+     * the position scaled to {@code [getMinProgress(), getMaxProgress()]}.
+     */
+    public void setProgress(long current, long total) {
+        if (mMetricsListener == null) {
+            mStateMachine.setProgress(current, total);
             return;
         }
 
-        try {
-            mLoadingText = attr.getText(R.styleable.ProcessButton_pb_textProgress);
-            mCompleteText = attr.getText(R.styleable.ProcessButton_pb_textComplete);
-            mErrorText = attr.getText(R.styleable.ProcessButton_pb_textError);
-            blockClicksWhenLoading = attr.getBoolean(R.styleable.ProcessButton_pb_blockClicksWhenLoading, blockClicksWhenLoading);
-            autoResumeToNormalState = attr.getBoolean(R.styleable.ProcessButton_pb_autoResumeToNormal, autoResumeToNormalState);
-            autoResumeToNormalStateDelay = attr.getInt(R.styleable.ProcessButton_pb_autoResumeToNormalDelay, autoResumeToNormalStateDelay);
+        long start = startProgressUpdate();
+        mStateMachine.setProgress(current, total);
+        finishProgressUpdate(start);
+    }
 
-            int purple = getColor(R.color.pb_library_purple_progress);
-            setColor(mProgressDrawable, attr, R.styleable.ProcessButton_pb_colorProgress, purple);
+    /**
+     * Replaces the scheduler of the return to the normal state, null restores the default one
+     * which posts to the view handler.
+     */
+    void setStateScheduler(ProgressStateMachine.Scheduler scheduler) {
+        mStateMachine.setScheduler(scheduler != null ? scheduler : mDefaultStateScheduler);
+    }
 
-            int green = getColor(R.color.pb_library_green_complete);
-            setColor(mCompleteDrawable, attr, R.styleable.ProcessButton_pb_colorComplete, green);
+    void applyProgress(int progress, int fraction) {
+        if (mMetricsListener == null) {
+            mStateMachine.applyProgress(progress, fraction);
+            return;
+        }
+
+        long start = startProgressUpdate();
+        mStateMachine.applyProgress(progress, fraction);
+        finishProgressUpdate(start);
+    }
 
-            int red = getColor(R.color.pb_library_red_error);
-            setColor(mErrorDrawable, attr, R.styleable.ProcessButton_pb_colorError, red);
-        } finally {
-            attr.recycle();
+    private long startProgressUpdate() {
+        mProgressApplied = false;
+        return System.nanoTime();
+    }
+
+    private void finishProgressUpdate(long start) {
+        long duration = System.nanoTime() - start;
+        // listener may be removed from a state callback
+        if (mMetricsListener != null) {
+            mMetricsListener.onProgressUpdate(this, mProgressApplied, duration);
+        }
+    }
+
+    /**
+     * Reports costs of this button, pass null to stop. Costs nothing but a null check
+     * while unset.
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        mMetricsListener = metricsListener;
+    }
+
+    protected MetricsListener getMetricsListener() {
+        return mMetricsListener;
+    }
+
+    private void applyState(State oldState, State newState) {
+        mState = newState;
+        mProgressApplied = true;
+        if (mMetricsListener != null) {
+            mMetricsListener.onStateChanged(this, oldState, newState, SystemClock.uptimeMillis());
+        }
+
+        int fraction = mStateMachine.getFraction();
+        cancelProgressAnimation();
+        // every progress run is drawn from the start
+        mDrawnFraction = newState == State.PROGRESS && mProgressInterpolationEnabled ? 0 : fraction;
+        if (newState == State.PROGRESS) {
+            updateDrawnProgress(fraction);
+        }
+
+        onStateChanged(oldState, newState);
+        releaseLabelRenderNode();
+        invalidate();
+    }
+
+    private void releaseLabelRenderNode() {
+        // the label is replayed only while progress is shown
+        if (mLabelRenderNode != null && mState != State.PROGRESS) {
+            mLabelRenderNode.discard();
+        }
+    }
+
+    /**
+     * When enabled, {@link #setProgress(int)} only sets the target and the drawn progress moves
+     * towards it with {@link #setProgressInterpolator(TimeInterpolator) interpolator} no faster than
+     * {@link #setMaxProgressVelocity(float) max velocity}. Drawn progress never goes back while
+     * the button stays in the progress state. State hooks always follow the set value.
+     */
+    public void setProgressInterpolationEnabled(boolean enabled) {
+        mProgressInterpolationEnabled = enabled;
+        if (!enabled) {
+            cancelProgressAnimation();
+            setDrawnFraction(mStateMachine.getFraction());
+        }
+    }
+
+    public boolean isProgressInterpolationEnabled() {
+        return mProgressInterpolationEnabled;
+    }
+
+    public void setProgressInterpolator(TimeInterpolator interpolator) {
+        mProgressInterpolator = interpolator;
+        mProgressInterpolatorPeakSlope = getPeakSlope(interpolator);
+        if (mProgressAnimator != null) {
+            mProgressAnimator.setInterpolator(interpolator);
+        }
+    }
+
+    /**
+     * @param fractionPerSecond part of the whole progress range the drawn progress can pass
+     * in a second at any point of the animation, the duration is stretched by the steepest
+     * part of the interpolator so its fastest moment stays within the cap
+     */
+    public void setMaxProgressVelocity(float fractionPerSecond) {
+        if (fractionPerSecond <= 0) {
+            throw new IllegalArgumentException("Velocity must be positive");
+        }
+        mMaxProgressVelocity = fractionPerSecond;
+    }
+
+    private void updateDrawnProgress(int fraction) {
+        if (!mProgressInterpolationEnabled) {
+            setDrawnFraction(fraction);
+            return;
+        }
+
+        int target = Math.max(fraction, mDrawnFraction);
+        boolean running = mProgressAnimator != null && mProgressAnimator.isRunning();
+        if (running && target <= mAnimationEndFraction) {
+            return;
+        }
+        if (target == mDrawnFraction) {
+            return;
+        }
+
+        if (mProgressAnimator == null) {
+            mProgressAnimator = ValueAnimator.ofFloat(0f, 1f);
+            mProgressAnimator.setInterpolator(mProgressInterpolator);
+            mProgressAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    float progress = animation.getAnimatedFraction();
+                    int range = mAnimationEndFraction - mAnimationStartFraction;
+                    setDrawnFraction(mAnimationStartFraction + (int) (range * progress));
+                }
+            });
+        } else {
+            mProgressAnimator.cancel();
+        }
+
+        mAnimationStartFraction = mDrawnFraction;
+        mAnimationEndFraction = target;
+        float distance = ProgressFraction.toFloat(target - mDrawnFraction);
+        float duration = distance * mProgressInterpolatorPeakSlope / mMaxProgressVelocity;
+        mProgressAnimator.setDuration((long) (duration * 1000));
+        mProgressAnimator.start();
+    }
+
+    /**
+     * Largest rate of change of the interpolator output, 1 for linear and about 2 for the default
+     * decelerate. Sampled, so the slope of curves steeper than the step is underestimated.
+     */
+    static float getPeakSlope(TimeInterpolator interpolator) {
+        final int samples = 64;
+        float peak = 1f;
+        float previous = interpolator.getInterpolation(0f);
+        for (int i = 1; i <= samples; i++) {
+            float value = interpolator.getInterpolation((float) i / samples);
+            peak = Math.max(peak, Math.abs(value - previous) * samples);
+            previous = value;
+        }
+        return peak;
+    }
+
+    private void cancelProgressAnimation() {
+        if (mProgressAnimator != null) {
+            mProgressAnimator.cancel();
+        }
+    }
+
+    private void setDrawnFraction(int fraction) {
+        int oldFraction = mDrawnFraction;
+        mDrawnFraction = fraction;
+        if (oldFraction != fraction && mState == State.PROGRESS) {
+            invalidateProgress(oldFraction, fraction);
         }
     }
 
     @Override
-    public void setCornerRadius(int cornerRadius) {
-        super.setCornerRadius(cornerRadius);
+    protected void onDetachedFromWindow() {
+        // nobody will see the rest of the animation
+        if (mProgressAnimator != null && mProgressAnimator.isRunning()) {
+            mProgressAnimator.cancel();
+            setDrawnFraction(mAnimationEndFraction);
+        }
+        if (mLabelRenderNode != null) {
+            mLabelRenderNode.discard();
+        }
+        super.onDetachedFromWindow();
+    }
 
-        mProgressDrawable.setCornerRadius(cornerRadius);
-        mCompleteDrawable.setCornerRadius(cornerRadius);
-        mErrorDrawable.setCornerRadius(cornerRadius);
+    private void invalidateProgress(int oldFraction, int newFraction) {
+        if (getProgressDirtyRect(ProgressFraction.toFloat(oldFraction),
+                ProgressFraction.toFloat(newFraction), mDirtyRect)) {
+            if (!mDirtyRect.isEmpty()) {
+                invalidateArea(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+            }
+        } else {
+            // progress doesn't change the label, keep its recorded display list
+            int scrollX = getScrollX();
+            int scrollY = getScrollY();
+            invalidateArea(scrollX, scrollY, scrollX + getWidth(), scrollY + getHeight());
+        }
+    }
+
+    /**
+     * Deprecated since API 28 because hardware rendering ignores the area, software rendering
+     * still clips to it. Unlike {@link #invalidate()} it keeps the recorded label.
+     */
+    @SuppressWarnings("deprecation")
+    private void invalidateArea(int left, int top, int right, int bottom) {
+        invalidate(left, top, right, bottom);
     }
 
     @Override
-    public void setOnClickListener(OnClickListener onClickListener) {
-        this.onClickListener = onClickListener;
+    public void invalidate() {
+        // text, text color and drawable state changes of TextView end up here
+        if (mLabelRenderNode != null) {
+            mLabelRenderNode.invalidate();
+        }
+        super.invalidate();
     }
 
-    public void setAutoResumeToNormalState(boolean autoResumeToNormalState) {
-        this.autoResumeToNormalState = autoResumeToNormalState;
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (mLabelRenderNode != null) {
+            mLabelRenderNode.invalidate();
+        }
+        if (mShownLabel != null) {
+            measureStateLabel(mShownLabel);
+        }
     }
 
-    public void setBlockClicksWhenLoading(boolean blockClicksWhenLoading) {
-        this.blockClicksWhenLoading = blockClicksWhenLoading;
+    /**
+     * Reports the area which changes when the drawn progress moves from {@code oldFraction}
+     * to {@code newFraction} while the button stays in {@link State#PROGRESS}.
+     *
+     * @param outRect receives the damaged area in view coordinates, may be left empty
+     * if nothing has to be redrawn
+     * @return false if the damaged area is unknown and the whole view has to be redrawn
+     */
+    protected boolean getProgressDirtyRect(float oldFraction, float newFraction, Rect outRect) {
+        return false;
     }
 
-    public void setProgress(int progress) {
-        mProgress = progress;
-
-        if (isNormalState()) {
-            onNormalState();
-        } else if (isCompleteState()) {
-            onCompleteState();
-        } else if (isErrorState()){
-            onErrorState();
+    /**
+     * @return position of the progress fill edge along a side of the given length
+     */
+    protected int getProgressEdge(float fraction, int length) {
+        return (int) (length * fraction);
+    }
+
+    /**
+     * Called from {@link #setProgress(int)} when the new value moves the button into another
+     * {@link State}. Progress updates that stay inside the same state only redraw the button.
+     *
+     * @param oldState state before the update
+     * @param newState state after the update
+     */
+    protected void onStateChanged(State oldState, State newState) {
+        switch (newState) {
+            case NORMAL:
+                onNormalState();
+                break;
+            case COMPLETE:
+                onCompleteState();
+                break;
+            case ERROR:
+                onErrorState();
+                break;
+            case PROGRESS:
+                onProgress();
+                break;
+        }
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * Returns a sink which accepts progress from any thread and applies it to this button
+     * at most once per display frame. Has to be obtained on the UI thread.
+     */
+    public ProgressSink getProgressSink() {
+        if (mProgressSink == null) {
+            mProgressSink = new ProgressSink(this);
+        }
+        return mProgressSink;
+    }
+
+    /**
+     * Shows the given progress and texts in one step, e.g. when a recycled row gets new data.
+     * Pending updates of the previous use are dropped, no intermediate states are passed,
+     * drawn progress jumps to the value and text is set at most once.
+     *
+     * @param normalText text of the normal state, replaces the text of the button
+     * @param loadingText {@link #setLoadingText(CharSequence)}
+     * @param completeText {@link #setCompleteText(CharSequence)}
+     * @param errorText {@link #setErrorText(CharSequence)}
+     */
+    public void bind(int progress, CharSequence normalText, CharSequence loadingText,
+                     CharSequence completeText, CharSequence errorText) {
+        unbind();
+
+        mLoadingText = loadingText;
+        mCompleteText = completeText;
+        mErrorText = errorText;
+
+        int fraction = ProgressFraction.of(progress, getMinProgress(), getMaxProgress());
+        mStateMachine.reset(progress, fraction);
+        State oldState = mState;
+        State newState = STATES[mStateMachine.getState()];
+
+        CharSequence stateText = newState != State.NORMAL ? getStateText(newState) : null;
+        if (stateText != null && !mStateTextDrawingEnabled) {
+            // state text goes to the view right away, normal one waits for the normal state
+            setSavedText(normalText);
         } else {
-            onProgress();
+            clearSavedText();
+            if (!TextUtils.equals(getText(), normalText)) {
+                setText(normalText);
+            }
         }
 
+        mDrawnFraction = fraction;
+        if (newState != oldState) {
+            mState = newState;
+            if (mMetricsListener != null) {
+                mMetricsListener.onStateChanged(this, oldState, newState, SystemClock.uptimeMillis());
+            }
+            onStateChanged(oldState, newState);
+            releaseLabelRenderNode();
+        } else if (newState != State.NORMAL) {
+            showStateText(stateText);
+        }
+        updateStableWidth();
         invalidate();
     }
 
+    /**
+     * Stops everything left from the current use of the button: progress animation, values
+     * pending in {@link #getProgressSink()} and return to the normal state. Shown state stays.
+     */
+    public void unbind() {
+        if (mProgressAnimator != null && mProgressAnimator.isRunning()) {
+            mProgressAnimator.cancel();
+            setDrawnFraction(mAnimationEndFraction);
+        }
+        if (mProgressSink != null) {
+            mProgressSink.clear();
+        }
+        mStateMachine.cancelPendingTasks();
+    }
+
     public void setNormalState() {
         setProgress(getMinProgress());
     }
@@ -181,104 +639,376 @@ public abstract class ProcessButton extends FlatButton {
     }
 
     public boolean isErrorState() {
-        return mProgress < mMinProgress;
+        return mStateMachine.isErrorState();
     }
 
     public boolean isCompleteState() {
-        return mProgress >= mMaxProgress;
+        return mStateMachine.isCompleteState();
     }
 
     public boolean isNormalState() {
-        return mProgress == mMinProgress;
+        return mStateMachine.isNormalState();
     }
 
     public boolean isProgressState() {
-        return mProgress > mMinProgress && mProgress < mMaxProgress;
+        return mStateMachine.isProgressState();
     }
 
     protected void onErrorState() {
-        if(getErrorText() != null) {
-            saveTextIfNotYet();
-            setText(getErrorText());
-        }
-        setBackgroundCompat(getErrorDrawable());
-        returnToNormalStateIfNeeded();
+        showStateText(getErrorText());
+        showStateBackground(LEVEL_ERROR, getErrorDrawable());
     }
 
     protected void onProgress() {
-        if(getLoadingText() != null) {
-            saveTextIfNotYet();
-            setText(getLoadingText());
-        }
-        setBackgroundCompat(getNormalDrawable());
-        cancelReturnToNormalTask();
+        showStateText(getLoadingText());
+        showStateBackground(LEVEL_NORMAL, getNormalDrawable());
     }
 
     protected void onCompleteState() {
-        if(getCompleteText() != null) {
-            saveTextIfNotYet();
-            setText(getCompleteText());
-        }
-        setBackgroundCompat(getCompleteDrawable());
-        returnToNormalStateIfNeeded();
+        showStateText(getCompleteText());
+        showStateBackground(LEVEL_COMPLETE, getCompleteDrawable());
     }
 
     protected void onNormalState() {
         restoreText();
-        setBackgroundCompat(getNormalDrawable());
-        cancelReturnToNormalTask();
+        if (mShownLabel != null) {
+            mShownLabel = null;
+            invalidate();
+        }
+        showStateBackground(LEVEL_NORMAL, getNormalDrawable());
     }
 
-    private void returnToNormalStateIfNeeded() {
-        if (!autoResumeToNormalState
-                || autoResumeTaskPosted) {
+    /**
+     * All state backgrounds live in one {@link LevelListDrawable} which is set as background
+     * once, a state change only switches its level. Background is set again only if it was
+     * replaced from outside or a state drawable was replaced with a setter.
+     */
+    private void showStateBackground(int level, Drawable drawable) {
+        if (drawable == null) {
+            mStateBackground = null;
+            setBackgroundCompat(null);
             return;
         }
 
-        Handler handler = getHandler();
-        if (handler != null) {
-            autoResumeTaskPosted = true;
-            handler.postDelayed(autoResumeToNormalStateTask, autoResumeToNormalStateDelay);
+        Drawable current = mStateBackgroundChildren[level];
+        if (current != drawable && current != null) {
+            // children can't be removed from a container, start over with a new one
+            mStateBackground = null;
+        }
+
+        boolean install = mStateBackground == null || getBackground() != mStateBackground;
+        if (mStateBackground == null) {
+            mStateBackground = new LevelListDrawable();
+            for (int i = 0; i < mStateBackgroundChildren.length; i++) {
+                mStateBackgroundChildren[i] = null;
+            }
+        }
+        if (mStateBackgroundChildren[level] == null) {
+            mStateBackground.addLevel(level, level, drawable);
+            mStateBackgroundChildren[level] = drawable;
+        }
+
+        mStateBackground.setLevel(level);
+        if (install) {
+            setBackgroundCompat(mStateBackground);
+        }
+    }
+
+    private void showStateText(CharSequence text) {
+        if (mStateTextDrawingEnabled) {
+            showStateLabel(text);
+        } else if (text != null) {
+            saveTextIfNotYet();
+            if (!TextUtils.equals(getText(), text)) {
+                setText(text);
+            }
+        }
+    }
+
+    private void showStateLabel(CharSequence text) {
+        StateLabel label = null;
+        if (text != null && mState != State.NORMAL) {
+            label = mStateLabels[mState.ordinal()];
+            if (label.getText() != text) {
+                label.setText(text);
+            }
+            measureStateLabel(label);
+        }
+        if (label != null || mShownLabel != null) {
+            mShownLabel = label;
+            invalidate();
+        }
+    }
+
+    private void measureStateLabel(StateLabel label) {
+        int width = getWidth() - getCompoundPaddingLeft() - getCompoundPaddingRight();
+        if (!label.isMeasured(width)) {
+            label.measure(getPaint(), width, getGravity());
+        }
+    }
+
+    /**
+     * When enabled, loading, complete and error texts are measured once and drawn over the
+     * button instead of being set with {@link #setText(CharSequence)}, so a state change
+     * never goes through text change and layout. Text of the button itself stays the normal
+     * one. Compound drawables are not drawn while a state text is shown.
+     */
+    public void setStateTextDrawingEnabled(boolean enabled) {
+        if (mStateTextDrawingEnabled == enabled) return;
+
+        mStateTextDrawingEnabled = enabled;
+        if (enabled && mStateLabels == null) {
+            mStateLabels = new StateLabel[STATES.length];
+            for (int i = 0; i < mStateLabels.length; i++) {
+                mStateLabels[i] = new StateLabel();
+            }
+        }
+
+        mShownLabel = null;
+        restoreText();
+        if (mState != State.NORMAL) {
+            showStateText(getStateText(mState));
+        }
+        invalidate();
+    }
+
+    public boolean isStateTextDrawingEnabled() {
+        return mStateTextDrawingEnabled;
+    }
+
+    private CharSequence getStateText(State state) {
+        switch (state) {
+            case PROGRESS:
+                return getLoadingText();
+            case COMPLETE:
+                return getCompleteText();
+            case ERROR:
+                return getErrorText();
+            default:
+                return getNormalText();
+        }
+    }
+
+    @Override
+    public void setTextSize(int unit, float size) {
+        super.setTextSize(unit, size);
+        invalidateStateLabels();
+    }
+
+    @Override
+    public void setTypeface(Typeface tf) {
+        super.setTypeface(tf);
+        invalidateStateLabels();
+    }
+
+    private void invalidateStateLabels() {
+        // called by TextView constructor before labels exist
+        if (mStateLabels != null) {
+            for (StateLabel label : mStateLabels) {
+                label.invalidate();
+            }
+            // the rest are measured when they are shown
+            if (mShownLabel != null) {
+                measureStateLabel(mShownLabel);
+            }
+        }
+        if (mStableWidthTexts != null) {
+            for (int i = 0; i < mStableWidthTexts.length; i++) {
+                mStableWidthTexts[i] = null;
+            }
+            updateStableWidth();
+        }
+    }
+
+    /**
+     * When enabled, the button width doesn't depend on the current state: it's measured once
+     * as the widest of the normal, loading, complete and error texts and pinned with
+     * {@link #setMinWidth(int)} and {@link #setMaxWidth(int)}. Pinned width also lets
+     * TextView skip layout requests on text changes, so state changes don't re-measure the
+     * parent. Width is recomputed only when one of the texts, text size or typeface changes.
+     */
+    public void setStableWidthEnabled(boolean enabled) {
+        if (mStableWidthEnabled == enabled) return;
+
+        mStableWidthEnabled = enabled;
+        if (enabled) {
+            if (mStableWidthTexts == null) {
+                mStableWidthTexts = new CharSequence[STATES.length];
+                mStableTextWidths = new float[STATES.length];
+            }
+            saveWidthBeforeStable();
+            updateStableWidth();
+        } else {
+            mStableWidth = 0;
+            for (int i = 0; i < mStableWidthTexts.length; i++) {
+                mStableWidthTexts[i] = null;
+            }
+            setMinWidth(mMinWidthBeforeStable);
+            setMaxWidth(mMaxWidthBeforeStable);
+        }
+    }
+
+    public boolean isStableWidthEnabled() {
+        return mStableWidthEnabled;
+    }
+
+    @SuppressLint("NewApi")
+    private void saveWidthBeforeStable() {
+        mMinWidthBeforeStable = 0;
+        mMaxWidthBeforeStable = Integer.MAX_VALUE;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // negative values mean the width is set in ems
+            if (getMinWidth() >= 0) {
+                mMinWidthBeforeStable = getMinWidth();
+            }
+            if (getMaxWidth() >= 0) {
+                mMaxWidthBeforeStable = getMaxWidth();
+            }
         }
     }
 
-    private void cancelReturnToNormalTask() {
-        autoResumeTaskPosted = false;
-        Handler handler = getHandler();
-        if (handler != null) {
-            handler.removeCallbacks(autoResumeToNormalStateTask);
+    private void updateStableWidth() {
+        if (!mStableWidthEnabled) return;
+
+        float textWidth = 0;
+        for (int i = 0; i < STATES.length; i++) {
+            CharSequence text = getStateText(STATES[i]);
+            if (text != mStableWidthTexts[i]) {
+                mStableWidthTexts[i] = text;
+                mStableTextWidths[i] = measureTextWidth(text);
+            }
+            textWidth = Math.max(textWidth, mStableTextWidths[i]);
+        }
+
+        int width = (int) Math.ceil(textWidth) + getCompoundPaddingLeft() + getCompoundPaddingRight();
+        width = Math.max(width, getSuggestedMinimumWidth());
+        if (width != mStableWidth) {
+            mStableWidth = width;
+            setMinWidth(width);
+            setMaxWidth(width);
+        }
+    }
+
+    private float measureTextWidth(CharSequence text) {
+        if (text == null) return 0;
+
+        TransformationMethod transformation = getTransformationMethod();
+        if (transformation != null) {
+            text = transformation.getTransformation(text, this);
+        }
+        return Layout.getDesiredWidth(text, getPaint());
+    }
+
+    @Override
+    protected void onTextChanged(CharSequence text, int start, int lengthBefore, int lengthAfter) {
+        super.onTextChanged(text, start, lengthBefore, lengthAfter);
+        // state switches reuse measured texts, only a new normal text is measured
+        if (mStableWidthTexts != null) {
+            updateStableWidth();
         }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        MetricsListener metricsListener = mMetricsListener;
+        if (metricsListener == null) {
+            drawContent(canvas);
+            return;
+        }
+
+        long start = System.nanoTime();
+        drawContent(canvas);
+        metricsListener.onDraw(this, System.nanoTime() - start);
+    }
+
+    private void drawContent(Canvas canvas) {
         // progress
-        if(mProgress > mMinProgress && mProgress < mMaxProgress) {
+        if (mState == State.PROGRESS) {
             drawProgress(canvas);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated()) {
+                drawRecordedLabel(canvas);
+                return;
+            }
         }
 
-        super.onDraw(canvas);
+        drawLabel(canvas);
+    }
+
+    @SuppressLint("NewApi")
+    private void drawRecordedLabel(Canvas canvas) {
+        if (mLabelRenderNode == null) {
+            mLabelRenderNode = new LabelRenderNode();
+        }
+        if (!mLabelRenderNode.isValid()) {
+            Canvas recordingCanvas = mLabelRenderNode.beginRecording(getWidth(), getHeight());
+            try {
+                drawLabel(recordingCanvas);
+            } finally {
+                mLabelRenderNode.endRecording();
+            }
+        }
+        mLabelRenderNode.draw(canvas);
+    }
+
+    private void drawLabel(Canvas canvas) {
+        StateLabel label = mShownLabel;
+        if (label == null) {
+            super.onDraw(canvas);
+            return;
+        }
+
+        TextPaint paint = getPaint();
+        paint.setColor(getCurrentTextColor());
+        paint.drawableState = getDrawableState();
+        // the measured layout draws with this paint
+        label.draw(canvas, getCompoundPaddingLeft(), getCompoundPaddingTop(),
+                getHeight() - getCompoundPaddingBottom(), getGravity());
     }
 
     public abstract void drawProgress(Canvas canvas);
 
     public int getProgress() {
-        return mProgress;
+        return mStateMachine.getProgress();
+    }
+
+    /**
+     * @return progress as a fraction of the whole range, from 0 to 1
+     */
+    public float getProgressFraction() {
+        return ProgressFraction.toFloat(mStateMachine.getFraction());
+    }
+
+    /**
+     * @return fraction which has to be drawn now, differs from {@link #getProgressFraction()}
+     * while progress interpolation is running
+     */
+    protected float getDrawnProgressFraction() {
+        return ProgressFraction.toFloat(mDrawnFraction);
     }
 
     public int getMaxProgress() {
-        return mMaxProgress;
+        return mStateMachine.getMaxProgress();
     }
 
     public int getMinProgress() {
-        return mMinProgress;
+        return mStateMachine.getMinProgress();
     }
 
+    /**
+     * Progress, complete and error drawables are created on first use and share their state
+     * with other buttons of the same style, call {@link Drawable#mutate()} before changing them.
+     */
     public GradientDrawable getProgressDrawable() {
+        if (mProgressDrawable == null) {
+            mProgressDrawable = createShapeDrawable(R.drawable.rect_progress, mProgressColor);
+        }
         return mProgressDrawable;
     }
 
     public GradientDrawable getCompleteDrawable() {
+        if (mCompleteDrawable == null) {
+            mCompleteDrawable = createShapeDrawable(R.drawable.rect_complete, mCompleteColor);
+        }
         return mCompleteDrawable;
     }
 
@@ -300,13 +1030,24 @@ public abstract class ProcessButton extends FlatButton {
 
     public void setLoadingText(CharSequence loadingText) {
         mLoadingText = loadingText;
+        updateStableWidth();
+        if (mState == State.PROGRESS) {
+            showStateText(loadingText);
+        }
     }
 
     public void setCompleteText(CharSequence completeText) {
         mCompleteText = completeText;
+        updateStableWidth();
+        if (mState == State.COMPLETE) {
+            showStateText(completeText);
+        }
     }
 
     public GradientDrawable getErrorDrawable() {
+        if (mErrorDrawable == null) {
+            mErrorDrawable = createShapeDrawable(R.drawable.rect_error, mErrorColor);
+        }
         return mErrorDrawable;
     }
 
@@ -320,13 +1061,18 @@ public abstract class ProcessButton extends FlatButton {
 
     public void setErrorText(CharSequence errorText) {
         mErrorText = errorText;
+        updateStableWidth();
+        if (mState == State.ERROR) {
+            showStateText(errorText);
+        }
     }
 
     @Override
     public Parcelable onSaveInstanceState() {
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
-        savedState.mProgress = mProgress;
+        savedState.mProgress = mStateMachine.getProgress();
+        savedState.mFraction = mStateMachine.getFraction();
 
         return savedState;
     }
@@ -336,7 +1082,9 @@ public abstract class ProcessButton extends FlatButton {
         if (state instanceof SavedState) {
             SavedState savedState = (SavedState) state;
             super.onRestoreInstanceState(savedState.getSuperState());
-            setProgress(savedState.mProgress);
+            applyProgress(savedState.mProgress, savedState.mFraction);
+            cancelProgressAnimation();
+            setDrawnFraction(savedState.mFraction);
         } else {
             super.onRestoreInstanceState(state);
         }
@@ -349,6 +1097,7 @@ public abstract class ProcessButton extends FlatButton {
     public static class SavedState extends FlatButton.SavedState {
 
         private int mProgress;
+        private int mFraction;
 
         public SavedState(Parcelable parcel) {
             super(parcel);
@@ -357,12 +1106,14 @@ public abstract class ProcessButton extends FlatButton {
         protected SavedState(Parcel in) {
             super(in);
             mProgress = in.readInt();
+            mFraction = in.readInt();
         }
 
         @Override
         public void writeToParcel(Parcel out, int flags) {
             super.writeToParcel(out, flags);
             out.writeInt(mProgress);
+            out.writeInt(mFraction);
         }
 
         public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
@@ -0,0 +1,356 @@
+package com.dd.processbutton;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Drives many {@link ProcessButton}s from one frame callback. Buttons are registered into
+ * slots, progress for any slot can be set from any thread and all changed buttons are updated
+ * together in the next display frame. Pending values live in primitive arrays indexed by
+ * slot, so a frame costs work proportional to the number of changed buttons and setting
+ * progress allocates nothing.
+ * <p>
+ * Unlike {@link ProgressSink} only the latest value of a button within a frame is applied,
+ * including complete and error values.
+ * <p>
+ * Has to be created on the main thread, registration also happens there.
+ */
+public class ProcessButtonGroup {
+
+    public static final int NO_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private ProcessButton[] buttons = new ProcessButton[INITIAL_CAPACITY];
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private int[] pendingProgress = new int[INITIAL_CAPACITY];
+    private int[] pendingFraction = new int[INITIAL_CAPACITY];
+    private boolean[] pending = new boolean[INITIAL_CAPACITY];
+    private int[] dirtySlots = new int[INITIAL_CAPACITY];
+    private int dirtyCount;
+    private final ProgressFraction progressFraction = new ProgressFraction();
+
+    // main thread copies of a frame worth of updates
+    private int[] applyingSlots = new int[INITIAL_CAPACITY];
+    private int[] applyingProgress = new int[INITIAL_CAPACITY];
+    private int[] applyingFraction = new int[INITIAL_CAPACITY];
+
+    private final FrameScheduler frameScheduler;
+    private AutoResumeScheduler autoResumeScheduler;
+
+    public ProcessButtonGroup() {
+        frameScheduler = FrameScheduler.create(new Runnable() {
+            @Override
+            public void run() {
+                applyPending();
+            }
+        });
+    }
+
+    /**
+     * When enabled, returns of registered buttons to the normal state after complete or error
+     * share one handler callback instead of posting a message per button. Like without the
+     * group, a button which isn't attached to a window doesn't return to the normal state.
+     */
+    public void setSharedAutoResumeEnabled(boolean enabled) {
+        if (enabled == (autoResumeScheduler != null)) return;
+
+        autoResumeScheduler = enabled ? new AutoResumeScheduler() : null;
+        for (ProcessButton button : buttons) {
+            if (button != null) {
+                button.setStateScheduler(createStateScheduler(button));
+            }
+        }
+    }
+
+    private ProgressStateMachine.Scheduler createStateScheduler(ProcessButton button) {
+        return autoResumeScheduler != null ? new ButtonScheduler(button, autoResumeScheduler) : null;
+    }
+
+    /**
+     * @return slot of the button, stays valid until {@link #unregister(int)}
+     */
+    public int register(ProcessButton button) {
+        int freeSlot = NO_SLOT;
+        for (int i = 0; i < buttons.length; i++) {
+            if (buttons[i] == button) {
+                return i;
+            } else if (buttons[i] == null && freeSlot == NO_SLOT) {
+                freeSlot = i;
+            }
+        }
+
+        if (freeSlot == NO_SLOT) {
+            freeSlot = buttons.length;
+            grow(buttons.length * 2);
+        }
+
+        buttons[freeSlot] = button;
+        if (autoResumeScheduler != null) {
+            button.setStateScheduler(createStateScheduler(button));
+        }
+        return freeSlot;
+    }
+
+    public void unregister(int slot) {
+        ProcessButton button = buttons[slot];
+        if (button == null) return;
+
+        buttons[slot] = null;
+        synchronized (lock) {
+            // slot may be reused before the next frame
+            pending[slot] = false;
+        }
+        if (autoResumeScheduler != null) {
+            button.setStateScheduler(null);
+        }
+    }
+
+    /**
+     * @return slot of the button or {@link #NO_SLOT} if it isn't registered
+     */
+    public int getSlot(ProcessButton button) {
+        for (int i = 0; i < buttons.length; i++) {
+            if (buttons[i] == button) {
+                return i;
+            }
+        }
+        return NO_SLOT;
+    }
+
+    public ProcessButton getButton(int slot) {
+        return buttons[slot];
+    }
+
+    public void setProgress(int slot, int progress) {
+        setPending(slot, progress, ProgressFraction.of(progress,
+                ProcessButton.MIN_PROGRESS, ProcessButton.MAX_PROGRESS));
+    }
+
+    /**
+     * @see ProcessButton#setProgress(long, long)
+     */
+    public void setProgress(int slot, long current, long total) {
+        synchronized (lock) {
+            int fraction = progressFraction.of(current, total);
+            setPendingLocked(slot, ProgressFraction.toProgress(current, total, fraction,
+                    ProcessButton.MIN_PROGRESS, ProcessButton.MAX_PROGRESS), fraction);
+        }
+        frameScheduler.schedule();
+    }
+
+    private void setPending(int slot, int progress, int fraction) {
+        synchronized (lock) {
+            setPendingLocked(slot, progress, fraction);
+        }
+        frameScheduler.schedule();
+    }
+
+    private void setPendingLocked(int slot, int progress, int fraction) {
+        pendingProgress[slot] = progress;
+        pendingFraction[slot] = fraction;
+        if (!pending[slot]) {
+            pending[slot] = true;
+            if (dirtyCount == dirtySlots.length) {
+                // only if slots were unregistered and reused within a frame
+                dirtySlots = copyOf(dirtySlots, dirtyCount * 2);
+            }
+            dirtySlots[dirtyCount++] = slot;
+        }
+    }
+
+    private void grow(int capacity) {
+        ProcessButton[] grownButtons = new ProcessButton[capacity];
+        System.arraycopy(buttons, 0, grownButtons, 0, buttons.length);
+        buttons = grownButtons;
+
+        synchronized (lock) {
+            pendingProgress = copyOf(pendingProgress, capacity);
+            pendingFraction = copyOf(pendingFraction, capacity);
+            boolean[] grownPending = new boolean[capacity];
+            System.arraycopy(pending, 0, grownPending, 0, pending.length);
+            pending = grownPending;
+            if (dirtySlots.length < capacity) {
+                dirtySlots = copyOf(dirtySlots, capacity);
+            }
+        }
+
+        applyingSlots = new int[capacity];
+        applyingProgress = new int[capacity];
+        applyingFraction = new int[capacity];
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private void applyPending() {
+        int count = 0;
+        synchronized (lock) {
+            for (int i = 0; i < dirtyCount; i++) {
+                int slot = dirtySlots[i];
+                if (!pending[slot]) continue;
+
+                pending[slot] = false;
+                applyingSlots[count] = slot;
+                applyingProgress[count] = pendingProgress[slot];
+                applyingFraction[count] = pendingFraction[slot];
+                count++;
+            }
+            dirtyCount = 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            ProcessButton button = buttons[applyingSlots[i]];
+            if (button != null) {
+                button.applyProgress(applyingProgress[i], applyingFraction[i]);
+            }
+        }
+    }
+
+    /**
+     * Drops progress which is not applied yet.
+     */
+    public void clear() {
+        synchronized (lock) {
+            for (int i = 0; i < dirtyCount; i++) {
+                pending[dirtySlots[i]] = false;
+            }
+            dirtyCount = 0;
+        }
+        frameScheduler.cancel();
+    }
+
+    /**
+     * Hands tasks of one button to the shared scheduler only while the button is attached,
+     * the same as the default scheduler of the button which posts to the view handler.
+     */
+    private static class ButtonScheduler implements ProgressStateMachine.Scheduler {
+
+        private final ProcessButton button;
+        private final AutoResumeScheduler scheduler;
+
+        ButtonScheduler(ProcessButton button, AutoResumeScheduler scheduler) {
+            this.button = button;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public boolean postDelayed(Runnable task, long delayMillis) {
+            return button.getHandler() != null && scheduler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            scheduler.cancel(task);
+        }
+    }
+
+    /**
+     * Keeps delayed tasks in arrays and posts a single callback for the earliest of them.
+     * The callback is removed with the last task, so the message queue doesn't hold the
+     * tasks and their buttons once nothing is pending.
+     */
+    private static class AutoResumeScheduler implements ProgressStateMachine.Scheduler, Runnable {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        private Runnable[] tasks = new Runnable[INITIAL_CAPACITY];
+        private long[] dueTimes = new long[INITIAL_CAPACITY];
+        private int count;
+        private Runnable[] dueTasks = new Runnable[INITIAL_CAPACITY];
+
+        private long postedTime = Long.MAX_VALUE;
+
+        @Override
+        public boolean postDelayed(Runnable task, long delayMillis) {
+            long dueTime = SystemClock.uptimeMillis() + delayMillis;
+            int index = indexOf(task);
+            if (index < 0) {
+                if (count == tasks.length) {
+                    Runnable[] grownTasks = new Runnable[count * 2];
+                    System.arraycopy(tasks, 0, grownTasks, 0, count);
+                    tasks = grownTasks;
+                    long[] grownTimes = new long[count * 2];
+                    System.arraycopy(dueTimes, 0, grownTimes, 0, count);
+                    dueTimes = grownTimes;
+                    dueTasks = new Runnable[count * 2];
+                }
+                index = count++;
+                tasks[index] = task;
+            }
+            dueTimes[index] = dueTime;
+
+            if (dueTime < postedTime) {
+                handler.removeCallbacks(this);
+                handler.postAtTime(this, dueTime);
+                postedTime = dueTime;
+            }
+            return true;
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            int index = indexOf(task);
+            if (index < 0) return;
+
+            remove(index);
+            // callback of a cancelled earlier task stays posted while others are pending, it
+            // only posts the next one
+            if (count == 0) {
+                handler.removeCallbacks(this);
+                postedTime = Long.MAX_VALUE;
+            }
+        }
+
+        private int indexOf(Runnable task) {
+            for (int i = 0; i < count; i++) {
+                if (tasks[i] == task) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void remove(int index) {
+            count--;
+            tasks[index] = tasks[count];
+            dueTimes[index] = dueTimes[count];
+            tasks[count] = null;
+        }
+
+        @Override
+        public void run() {
+            postedTime = Long.MAX_VALUE;
+            long now = SystemClock.uptimeMillis();
+
+            // tasks change the scheduler while running, take the due ones out first
+            int dueCount = 0;
+            for (int i = count - 1; i >= 0; i--) {
+                if (dueTimes[i] <= now) {
+                    dueTasks[dueCount++] = tasks[i];
+                    remove(i);
+                }
+            }
+            for (int i = 0; i < dueCount; i++) {
+                Runnable task = dueTasks[i];
+                dueTasks[i] = null;
+                task.run();
+            }
+
+            long nextTime = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                nextTime = Math.min(nextTime, dueTimes[i]);
+            }
+            if (nextTime != Long.MAX_VALUE && nextTime < postedTime) {
+                handler.postAtTime(this, nextTime);
+                postedTime = nextTime;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.dd.processbutton;
+
+/**
+ * {@link ProcessButton.MetricsListener} which aggregates everything into primitive counters,
+ * recording an event allocates nothing. Not thread-safe, read it on the main thread or
+ * copy the values there.
+ */
+public class ProcessButtonMetrics implements ProcessButton.MetricsListener {
+
+    private long stateChanges;
+    private long lastStateChangeTime;
+    private final long[] stateEntries = new long[4];
+
+    private long progressUpdatesReceived;
+    private long progressUpdatesApplied;
+    private long setProgressNanos;
+    private long maxSetProgressNanos;
+
+    private long draws;
+    private long drawNanos;
+    private long maxDrawNanos;
+
+    private long endlessFrames;
+
+    @Override
+    public void onStateChanged(ProcessButton button, ProcessButton.State oldState,
+                               ProcessButton.State newState, long uptimeMillis) {
+        stateChanges++;
+        stateEntries[newState.ordinal()]++;
+        lastStateChangeTime = uptimeMillis;
+    }
+
+    @Override
+    public void onProgressUpdate(ProcessButton button, boolean applied, long durationNanos) {
+        progressUpdatesReceived++;
+        if (applied) {
+            progressUpdatesApplied++;
+        }
+        setProgressNanos += durationNanos;
+        maxSetProgressNanos = Math.max(maxSetProgressNanos, durationNanos);
+    }
+
+    @Override
+    public void onDraw(ProcessButton button, long durationNanos) {
+        draws++;
+        drawNanos += durationNanos;
+        maxDrawNanos = Math.max(maxDrawNanos, durationNanos);
+    }
+
+    @Override
+    public void onEndlessFrame(ProcessButton button) {
+        endlessFrames++;
+    }
+
+    public long getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * @return how many times the button entered the given state
+     */
+    public long getStateEntries(ProcessButton.State state) {
+        return stateEntries[state.ordinal()];
+    }
+
+    /**
+     * @return {@link android.os.SystemClock#uptimeMillis()} of the last state change, 0 if
+     * there was none
+     */
+    public long getLastStateChangeTime() {
+        return lastStateChangeTime;
+    }
+
+    public long getProgressUpdatesReceived() {
+        return progressUpdatesReceived;
+    }
+
+    /**
+     * @return updates which changed state or drawn progress, the rest were repeated values
+     */
+    public long getProgressUpdatesApplied() {
+        return progressUpdatesApplied;
+    }
+
+    public long getSetProgressNanos() {
+        return setProgressNanos;
+    }
+
+    public long getMaxSetProgressNanos() {
+        return maxSetProgressNanos;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    public long getDrawNanos() {
+        return drawNanos;
+    }
+
+    public long getMaxDrawNanos() {
+        return maxDrawNanos;
+    }
+
+    public long getEndlessFrames() {
+        return endlessFrames;
+    }
+
+    public void reset() {
+        stateChanges = 0;
+        lastStateChangeTime = 0;
+        for (int i = 0; i < stateEntries.length; i++) {
+            stateEntries[i] = 0;
+        }
+        progressUpdatesReceived = 0;
+        progressUpdatesApplied = 0;
+        setProgressNanos = 0;
+        maxSetProgressNanos = 0;
+        draws = 0;
+        drawNanos = 0;
+        maxDrawNanos = 0;
+        endlessFrames = 0;
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.dd.processbutton;
+
+import android.content.Context;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Library-wide helpers.
+ */
+public final class ProcessButtons {
+
+    private static ExecutorService prewarmExecutor;
+
+    private ProcessButtons() {
+    }
+
+    /**
+     * Builds backgrounds and state drawables of the given styles on a background thread and
+     * puts them into the process-wide drawable cache, so buttons inflated later with the same
+     * colors and corner radius skip parsing drawable resources. Buttons inflated before
+     * prewarming is done build their drawables as usual. Safe to call from
+     * {@link android.app.Application#onCreate()}.
+     *
+     * @param styleIds styles with button attributes, library defaults are prewarmed if none
+     * are given
+     */
+    public static void prewarm(Context context, int... styleIds) {
+        final Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        final int[] styles = styleIds.clone();
+        getPrewarmExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                BackgroundBuilder builder = new BackgroundBuilder(appContext);
+                if (styles.length == 0) {
+                    prewarm(builder, ButtonStyleSpec.obtain(appContext, null, ButtonStyleSpec.TYPE_PROCESS_BUTTON));
+                }
+                for (int style : styles) {
+                    prewarm(builder, ButtonStyleSpec.obtain(appContext, style, ButtonStyleSpec.TYPE_PROCESS_BUTTON));
+                }
+            }
+        });
+    }
+
+    private static void prewarm(BackgroundBuilder builder, ButtonStyleSpec spec) {
+        float cornerRadius = spec.getCornerRadius();
+        builder.createBackground(spec);
+        builder.createShapeDrawable(R.drawable.rect_progress, spec.getProgressColor(), cornerRadius);
+        builder.createShapeDrawable(R.drawable.rect_complete, spec.getCompleteColor(), cornerRadius);
+        builder.createShapeDrawable(R.drawable.rect_error, spec.getErrorColor(), cornerRadius);
+    }
+
+    private static synchronized Executor getPrewarmExecutor() {
+        if (prewarmExecutor == null) {
+            prewarmExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "ProcessButtons-prewarm");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return prewarmExecutor;
+    }
+}
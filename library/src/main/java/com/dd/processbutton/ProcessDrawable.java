@@ -0,0 +1,119 @@
+package com.dd.processbutton;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Progress fill of a {@link ProcessButton}. The fill drawable always keeps the full bounds
+ * and the progress edge is applied as a clip, so progress ticks don't change the fill
+ * bounds and a {@link android.graphics.drawable.GradientDrawable} keeps its rounded rect
+ * path until the size or corner radius changes. Corners don't distort on short fills either.
+ * <p>
+ * {@link #setEdge(int)} doesn't invalidate the drawable, the owner invalidates the area from
+ * {@link #getDirtyRect(int, int, Rect)} itself.
+ */
+public class ProcessDrawable extends Drawable {
+
+    public static final int HORIZONTAL = 0;
+    public static final int VERTICAL = 1;
+
+    private final int orientation;
+    private Drawable fill;
+    private int edge;
+
+    /**
+     * @param orientation {@link #HORIZONTAL} fills from the left, {@link #VERTICAL} from the top
+     */
+    public ProcessDrawable(int orientation) {
+        this.orientation = orientation;
+    }
+
+    public void setFill(Drawable fill) {
+        if (this.fill == fill) return;
+
+        this.fill = fill;
+        if (fill != null) {
+            fill.setBounds(getBounds());
+        }
+        invalidateSelf();
+    }
+
+    public Drawable getFill() {
+        return fill;
+    }
+
+    /**
+     * @param edge distance of the progress edge from the left or top of the bounds
+     */
+    public void setEdge(int edge) {
+        this.edge = edge;
+    }
+
+    public int getEdge() {
+        return edge;
+    }
+
+    /**
+     * Area which changes when the edge moves from {@code oldEdge} to {@code newEdge}. The edge
+     * is a straight clip, so only the band between the edges is redrawn.
+     *
+     * @param outRect receives the band in the coordinates of the bounds, empty if the edges
+     * are equal
+     */
+    public void getDirtyRect(int oldEdge, int newEdge, Rect outRect) {
+        Rect bounds = getBounds();
+        int start = Math.min(oldEdge, newEdge);
+        int end = Math.max(oldEdge, newEdge);
+        if (orientation == HORIZONTAL) {
+            outRect.set(bounds.left + start, bounds.top, bounds.left + end, bounds.bottom);
+        } else {
+            outRect.set(bounds.left, bounds.top + start, bounds.right, bounds.top + end);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        if (fill != null) {
+            fill.setBounds(bounds);
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (fill == null || edge <= 0) return;
+
+        Rect bounds = getBounds();
+        int saveCount = canvas.save();
+        if (orientation == HORIZONTAL) {
+            canvas.clipRect(bounds.left, bounds.top, bounds.left + edge, bounds.bottom);
+        } else {
+            canvas.clipRect(bounds.left, bounds.top, bounds.right, bounds.top + edge);
+        }
+        fill.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (fill != null) {
+            fill.setAlpha(alpha);
+        }
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        if (fill != null) {
+            fill.setColorFilter(colorFilter);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.dd.processbutton;
+
+/**
+ * Fixed-point progress fraction in {@code [0, ONE]} range. Keeps the reciprocal of the last
+ * used total, so converting byte counts of the same transfer costs a multiplication instead of
+ * a long division.
+ */
+final class ProgressFraction {
+
+    static final int SHIFT = 16;
+    static final int ONE = 1 << SHIFT;
+
+    private long total;
+    private double reciprocal;
+
+    int of(long current, long total) {
+        if (current <= 0) {
+            return 0;
+        }
+        if (current >= total) {
+            return ONE;
+        }
+
+        if (total != this.total) {
+            this.total = total;
+            this.reciprocal = (double) ONE / (double) total;
+        }
+        return Math.min(ONE, (int) (current * reciprocal));
+    }
+
+    static int of(int progress, int min, int max) {
+        if (progress <= min) {
+            return 0;
+        }
+        if (progress >= max) {
+            return ONE;
+        }
+        return (int) (((long) (progress - min) << SHIFT) / (max - min));
+    }
+
+    /**
+     * Maps a byte-level position to the int progress scale without losing
+     * normal/complete/error semantics.
+     */
+    static int toProgress(long current, long total, int fraction, int min, int max) {
+        if (current < 0) {
+            return min - 1;
+        } else if (current == 0) {
+            return min;
+        } else if (current >= total) {
+            return max;
+        }
+
+        int progress = min + (int) (((long) fraction * (max - min)) >> SHIFT);
+        // keep it inside of the progress state even for tiny or almost finished transfers
+        return Math.max(min + 1, Math.min(max - 1, progress));
+    }
+
+    static float toFloat(int fraction) {
+        return (float) fraction / ONE;
+    }
+
+}
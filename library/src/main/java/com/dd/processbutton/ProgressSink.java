@@ -0,0 +1,156 @@
+package com.dd.processbutton;
+
+/**
+ * Thread-safe progress input for a {@link ProcessButton}. Values can be written from any thread
+ * at any rate, the button receives the latest one at most once per display frame.
+ * Intermediate progress values written within a frame are dropped, complete and error values
+ * are always delivered in the order they were written.
+ *
+ * @see ProcessButton#getProgressSink()
+ */
+public class ProgressSink {
+
+    // pending value packs int progress into high and fixed-point fraction into low bits
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final ProcessButton button;
+    private final int minProgress;
+    private final int maxProgress;
+
+    private final FrameScheduler frameScheduler;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private long pendingProgress = NONE;
+    private final ProgressFraction progressFraction = new ProgressFraction();
+    private long coalescedCount;
+    private int[] pendingTerminals = new int[2];
+    private int pendingTerminalsCount;
+
+    private int[] applyingTerminals = new int[2];
+
+    ProgressSink(ProcessButton button) {
+        this.button = button;
+        this.minProgress = button.getMinProgress();
+        this.maxProgress = button.getMaxProgress();
+        this.frameScheduler = FrameScheduler.create(new Runnable() {
+            @Override
+            public void run() {
+                applyPending();
+            }
+        });
+    }
+
+    public void setProgress(int progress) {
+        if (progress < minProgress || progress >= maxProgress) {
+            enqueueTerminal(progress);
+        } else {
+            setPending(progress, ProgressFraction.of(progress, minProgress, maxProgress));
+        }
+    }
+
+    /**
+     * @see ProcessButton#setProgress(long, long)
+     */
+    public void setProgress(long current, long total) {
+        if (current < 0 || current >= total) {
+            enqueueTerminal(ProgressFraction.toProgress(current, total, 0, minProgress, maxProgress));
+        } else {
+            synchronized (lock) {
+                int fraction = progressFraction.of(current, total);
+                setPendingLocked(ProgressFraction.toProgress(current, total, fraction, minProgress, maxProgress), fraction);
+            }
+            frameScheduler.schedule();
+        }
+    }
+
+    private void setPending(int progress, int fraction) {
+        synchronized (lock) {
+            setPendingLocked(progress, fraction);
+        }
+        frameScheduler.schedule();
+    }
+
+    private void setPendingLocked(int progress, int fraction) {
+        if (pendingProgress != NONE) {
+            coalescedCount++;
+        }
+        pendingProgress = ((long) progress << 32) | (fraction & 0xffffffffL);
+    }
+
+    private void enqueueTerminal(int progress) {
+        synchronized (lock) {
+            // everything written before a terminal value is superseded by it
+            if (pendingProgress != NONE) {
+                coalescedCount++;
+                pendingProgress = NONE;
+            }
+            if (pendingTerminalsCount == pendingTerminals.length) {
+                int[] grown = new int[pendingTerminalsCount * 2];
+                System.arraycopy(pendingTerminals, 0, grown, 0, pendingTerminalsCount);
+                pendingTerminals = grown;
+            }
+            pendingTerminals[pendingTerminalsCount++] = progress;
+        }
+
+        frameScheduler.schedule();
+    }
+
+    public void setNormalState() {
+        setProgress(minProgress);
+    }
+
+    public void setCompleteState() {
+        setProgress(maxProgress);
+    }
+
+    public void setErrorState() {
+        setProgress(minProgress - 1);
+    }
+
+    /**
+     * @return number of progress values which were replaced by a newer value before
+     * reaching the button
+     */
+    public long getCoalescedCount() {
+        synchronized (lock) {
+            return coalescedCount;
+        }
+    }
+
+    /**
+     * Drops values which are not applied yet.
+     */
+    public void clear() {
+        synchronized (lock) {
+            pendingTerminalsCount = 0;
+            pendingProgress = NONE;
+        }
+        frameScheduler.cancel();
+    }
+
+    private void applyPending() {
+        int terminalsCount;
+        long packed;
+        // progress is taken together with the terminals, a value pending now was written
+        // after all of them
+        synchronized (lock) {
+            terminalsCount = pendingTerminalsCount;
+            if (terminalsCount > applyingTerminals.length) {
+                applyingTerminals = new int[pendingTerminals.length];
+            }
+            System.arraycopy(pendingTerminals, 0, applyingTerminals, 0, terminalsCount);
+            pendingTerminalsCount = 0;
+            packed = pendingProgress;
+            pendingProgress = NONE;
+        }
+
+        for (int i = 0; i < terminalsCount; i++) {
+            button.setProgress(applyingTerminals[i]);
+        }
+
+        if (packed != NONE) {
+            button.applyProgress((int) (packed >> 32), (int) packed);
+        }
+    }
+}
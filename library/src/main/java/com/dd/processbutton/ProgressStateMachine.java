@@ -0,0 +1,265 @@
+package com.dd.processbutton;
+
+/**
+ * Framework-free model behind {@link ProcessButton}: maps progress to normal, progress,
+ * complete and error states, returns to the normal state after complete or error and
+ * decides whether clicks are delivered. Not thread-safe, every call has to be made from the
+ * thread the {@link Scheduler} runs tasks on.
+ */
+public class ProgressStateMachine {
+
+    public static final int STATE_NORMAL = 0;
+    public static final int STATE_PROGRESS = 1;
+    public static final int STATE_COMPLETE = 2;
+    public static final int STATE_ERROR = 3;
+
+    public interface Listener {
+
+        /**
+         * Called when a progress update moves the machine into another state.
+         * {@link #getProgress()} and {@link #getFraction()} already report the new value.
+         */
+        void onStateChanged(int oldState, int newState);
+
+        /**
+         * Called when progress changes while the machine stays in {@link #STATE_PROGRESS}.
+         *
+         * @param fraction fixed-point fraction of the whole range, see {@link #getFraction()}
+         */
+        void onProgressChanged(int progress, int fraction);
+    }
+
+    public interface Scheduler {
+
+        /**
+         * @return false if the task can't be scheduled now, it won't be cancelled then
+         */
+        boolean postDelayed(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    private final int minProgress;
+    private final int maxProgress;
+
+    private int progress;
+    private int fraction;
+    private int state = STATE_NORMAL;
+    private final ProgressFraction progressFraction = new ProgressFraction();
+
+    private Listener listener;
+    private Scheduler scheduler;
+
+    private boolean blockClicksWhenLoading;
+
+    private boolean autoResumeToNormalState;
+    private boolean autoResumeTaskPosted;
+    private long autoResumeToNormalStateDelay;
+    private final Runnable autoResumeToNormalStateTask = new Runnable() {
+        @Override
+        public void run() {
+            autoResumeTaskPosted = false;
+            if (state == STATE_ERROR || state == STATE_COMPLETE) {
+                setProgress(minProgress);
+            }
+        }
+    };
+
+    public ProgressStateMachine(int minProgress, int maxProgress) {
+        if (maxProgress <= minProgress + 1) {
+            throw new IllegalArgumentException("Progress range has to include at least one loading value");
+        }
+        this.minProgress = minProgress;
+        this.maxProgress = maxProgress;
+        this.progress = minProgress;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param scheduler runs the return to the normal state, without it the machine stays in
+     * the complete and error states until the next progress update
+     */
+    public void setScheduler(Scheduler scheduler) {
+        boolean posted = autoResumeTaskPosted;
+        cancelReturnToNormalTask();
+        this.scheduler = scheduler;
+        if (posted) {
+            // pending return moves to the new scheduler, its delay starts over
+            returnToNormalStateIfNeeded();
+        }
+    }
+
+    public void setAutoResumeToNormalState(boolean autoResumeToNormalState) {
+        this.autoResumeToNormalState = autoResumeToNormalState;
+    }
+
+    public boolean isAutoResumeToNormalState() {
+        return autoResumeToNormalState;
+    }
+
+    public void setAutoResumeToNormalStateDelay(long delayMillis) {
+        this.autoResumeToNormalStateDelay = delayMillis;
+    }
+
+    public long getAutoResumeToNormalStateDelay() {
+        return autoResumeToNormalStateDelay;
+    }
+
+    public void setBlockClicksWhenLoading(boolean blockClicksWhenLoading) {
+        this.blockClicksWhenLoading = blockClicksWhenLoading;
+    }
+
+    public boolean isBlockClicksWhenLoading() {
+        return blockClicksWhenLoading;
+    }
+
+    public void setProgress(int progress) {
+        applyProgress(progress, ProgressFraction.of(progress, minProgress, maxProgress));
+    }
+
+    /**
+     * @see ProcessButton#setProgress(long, long)
+     */
+    public void setProgress(long current, long total) {
+        int fraction = progressFraction.of(current, total);
+        applyProgress(ProgressFraction.toProgress(current, total, fraction, minProgress, maxProgress), fraction);
+    }
+
+    void applyProgress(int progress, int fraction) {
+        int oldProgress = this.progress;
+        int oldFraction = this.fraction;
+        this.progress = progress;
+        this.fraction = fraction;
+
+        int newState = resolveState(progress);
+        if (newState != state) {
+            int oldState = state;
+            state = newState;
+
+            if (newState == STATE_COMPLETE || newState == STATE_ERROR) {
+                returnToNormalStateIfNeeded();
+            } else {
+                cancelReturnToNormalTask();
+            }
+
+            if (listener != null) {
+                listener.onStateChanged(oldState, newState);
+            }
+        } else if (newState == STATE_PROGRESS
+                && (progress != oldProgress || fraction != oldFraction)) {
+            if (listener != null) {
+                listener.onProgressChanged(progress, fraction);
+            }
+        }
+    }
+
+    /**
+     * Moves to the given value without listener callbacks. Pending return to the normal
+     * state is dropped and scheduled again if the new state needs it.
+     */
+    void reset(int progress, int fraction) {
+        cancelReturnToNormalTask();
+        this.progress = progress;
+        this.fraction = fraction;
+        state = resolveState(progress);
+        if (state == STATE_COMPLETE || state == STATE_ERROR) {
+            returnToNormalStateIfNeeded();
+        }
+    }
+
+    /**
+     * Drops pending return to the normal state, the machine stays in its current state.
+     */
+    void cancelPendingTasks() {
+        cancelReturnToNormalTask();
+    }
+
+    /**
+     * Has to be called on every click of the driven view.
+     *
+     * @return false if the click has to be ignored
+     */
+    public boolean onClick() {
+        if (blockClicksWhenLoading && state == STATE_PROGRESS) {
+            return false;
+        }
+
+        if (autoResumeToNormalState
+                && (state == STATE_ERROR || state == STATE_COMPLETE)) {
+            setProgress(minProgress);
+        }
+        return true;
+    }
+
+    private int resolveState(int progress) {
+        if (progress == minProgress) {
+            return STATE_NORMAL;
+        } else if (progress >= maxProgress) {
+            return STATE_COMPLETE;
+        } else if (progress < minProgress) {
+            return STATE_ERROR;
+        } else {
+            return STATE_PROGRESS;
+        }
+    }
+
+    private void returnToNormalStateIfNeeded() {
+        if (!autoResumeToNormalState
+                || autoResumeTaskPosted
+                || scheduler == null) {
+            return;
+        }
+
+        autoResumeTaskPosted = scheduler.postDelayed(autoResumeToNormalStateTask, autoResumeToNormalStateDelay);
+    }
+
+    private void cancelReturnToNormalTask() {
+        autoResumeTaskPosted = false;
+        if (scheduler != null) {
+            scheduler.cancel(autoResumeToNormalStateTask);
+        }
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return progress as a 16.16 fixed-point fraction of the whole range
+     */
+    public int getFraction() {
+        return fraction;
+    }
+
+    public int getMinProgress() {
+        return minProgress;
+    }
+
+    public int getMaxProgress() {
+        return maxProgress;
+    }
+
+    public boolean isErrorState() {
+        return progress < minProgress;
+    }
+
+    public boolean isCompleteState() {
+        return progress >= maxProgress;
+    }
+
+    public boolean isNormalState() {
+        return progress == minProgress;
+    }
+
+    public boolean isProgressState() {
+        return progress > minProgress && progress < maxProgress;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.dd.processbutton;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.Gravity;
+
+/**
+ * State text measured once into a {@link StaticLayout} and drawn directly, so switching
+ * to it doesn't go through {@link android.widget.TextView#setText(CharSequence)}.
+ * Layout is built by {@link #measure(TextPaint, int, int)} when the text, text paint or
+ * available width changes, drawing only replays it.
+ */
+final class StateLabel {
+
+    private CharSequence text;
+    private StaticLayout layout;
+
+    void setText(CharSequence text) {
+        this.text = text;
+        layout = null;
+    }
+
+    CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Drops the measured layout, has to be called when the text paint changes.
+     */
+    void invalidate() {
+        layout = null;
+    }
+
+    /**
+     * @return false if the label has to be measured for the given width before it's drawn
+     */
+    boolean isMeasured(int width) {
+        return text == null || width <= 0 || (layout != null && layout.getWidth() == width);
+    }
+
+    /**
+     * @param gravity text gravity of the view, horizontal part is mapped to left, center
+     * or right alignment
+     */
+    void measure(TextPaint paint, int width, int gravity) {
+        if (text == null || width <= 0) {
+            layout = null;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            layout = buildLayout(text, paint, width, resolveAlignment(gravity));
+        } else {
+            layout = buildLayoutCompat(text, paint, width, resolveAlignment(gravity));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static StaticLayout buildLayout(CharSequence text, TextPaint paint, int width,
+                                            Layout.Alignment alignment) {
+        return StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+                .setAlignment(alignment)
+                .setLineSpacing(0f, 1f)
+                .setIncludePad(false)
+                .build();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static StaticLayout buildLayoutCompat(CharSequence text, TextPaint paint, int width,
+                                                  Layout.Alignment alignment) {
+        return new StaticLayout(text, paint, width, alignment, 1f, 0f, false);
+    }
+
+    /**
+     * Draws the layout built by the last {@link #measure(TextPaint, int, int)}, nothing if the
+     * label wasn't measured.
+     *
+     * @param gravity text gravity of the view, vertical part places the text between
+     * {@code top} and {@code bottom}
+     */
+    void draw(Canvas canvas, int left, int top, int bottom, int gravity) {
+        if (layout == null) return;
+
+        int height = layout.getHeight();
+        int y;
+        switch (gravity & Gravity.VERTICAL_GRAVITY_MASK) {
+            case Gravity.TOP:
+                y = top;
+                break;
+            case Gravity.BOTTOM:
+                y = bottom - height;
+                break;
+            default:
+                y = top + (bottom - top - height) / 2;
+                break;
+        }
+
+        int saveCount = canvas.save();
+        canvas.translate(left, y);
+        layout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private static Layout.Alignment resolveAlignment(int gravity) {
+        switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+            case Gravity.LEFT:
+                return Layout.Alignment.ALIGN_NORMAL;
+            case Gravity.RIGHT:
+                return Layout.Alignment.ALIGN_OPPOSITE;
+            default:
+                return Layout.Alignment.ALIGN_CENTER;
+        }
+    }
+
+}
@@ -1,16 +1,24 @@
 package com.dd.processbutton.iml;
 
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.res.Resources;
-import android.content.res.TypedArray;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
 import android.util.AttributeSet;
+import android.view.View;
+import com.dd.processbutton.ButtonStyleSpec;
 import com.dd.processbutton.ProcessButton;
-import com.dd.processbutton.R;
+import com.dd.processbutton.ProcessDrawable;
 import fr.castorflex.android.smoothprogressbar.SmoothProgressDrawable;
 
 /*
@@ -39,23 +47,46 @@ import fr.castorflex.android.smoothprogressbar.SmoothProgressDrawable;
 
 public class ActionProcessButton extends ProcessButton {
 
+    private static final float ENDLESS_SPEED = 2f;
+    // SmoothProgressDrawable posts its frames at this rate
+    private static final int ENDLESS_FPS = 60;
+    private static final int POWER_SAVE_FPS = 10;
+    private static final long STATIC_FRAME_INTERVAL = -1;
+
     private boolean initialized;
 
     private Mode mMode;
 
-    private int mColor1;
-    private int mColor2;
-    private int mColor3;
-    private int mColor4;
+    // shared with the endless drawable, updated in place
+    private int[] mColors;
 
     private ColorDrawable overlay;
+    // created on the first endless loading, most buttons never need it
     private SmoothProgressDrawable mEndlessProgressDrawable;
 
+    private boolean mAttached;
+    private boolean mEndlessAnimationPaused = true;
+    // last frame posted by the endless drawable and the one held back while paused
+    private Runnable mEndlessFrame;
+    private Runnable mPendingEndlessFrame;
+    // set when the running endless drawable invalidates, reported to metrics when drawn
+    private boolean mEndlessFrameProduced;
+
+    private int mMaxFps;
+    private boolean mPowerSavingPolicyEnabled = true;
+    // 0 - no cap, STATIC_FRAME_INTERVAL - no animation at all
+    private long mEndlessFrameInterval;
+    private long mLastEndlessFrameTime;
+    // registered only while the endless indicator is shown
+    private BroadcastReceiver mPowerSaveModeReceiver;
+
     public enum Mode {
         PROGRESS, ENDLESS
     }
 
-    private Rect rect = new Rect();
+    // bottom band occupied by the indicator, updated on size change
+    private final Rect mProgressBounds = new Rect();
+    private final ProcessDrawable mLineProgressDrawable = new ProcessDrawable(ProcessDrawable.HORIZONTAL);
 
     public ActionProcessButton(Context context) {
         super(context);
@@ -75,71 +106,309 @@ public class ActionProcessButton extends ProcessButton {
     private void init(Context context, AttributeSet attributeSet) {
         if (initialized) return;
 
-        Resources res = context.getResources();
-
         overlay = new ColorDrawable(Color.argb(80, 0, 0, 0));
 
         mMode = Mode.ENDLESS;
 
-        mColor1 = res.getColor(R.color.pb_library_holo_blue_bright);
-        mColor2 = res.getColor(R.color.pb_library_holo_green_light);
-        mColor3 = res.getColor(R.color.pb_library_holo_orange_light);
-        mColor4 = res.getColor(R.color.pb_library_holo_red_light);
+        ButtonStyleSpec spec = getStyleSpec();
+        mColors = spec.getEndlessProgressColors();
+        mMaxFps = spec.getMaxFps();
 
-        TypedArray attr = getTypedArray(attributeSet, R.styleable.ActionProcessButton);
-        if (attr == null) {
-            return;
-        }
+        initialized = true;
+    }
 
-        try {
-            mColor1 = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_1, mColor1);
-            mColor2 = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_2, mColor2);
-            mColor3 = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_3, mColor3);
-            mColor4 = attr.getColor(R.styleable.ActionProcessButton_pb_progress_color_4, mColor4);
-        } finally {
-            attr.recycle();
+    private SmoothProgressDrawable getEndlessProgressDrawable() {
+        if (mEndlessProgressDrawable == null) {
+            SmoothProgressDrawable.Builder builder = (new SmoothProgressDrawable.Builder(getContext()))
+                    .sectionsCount(2)
+                    .speed(ENDLESS_SPEED)
+                    .progressiveStart(true)
+                    .progressiveStartSpeed(2.5f)
+                    .progressiveStopSpeed(2.5f)
+                    .colors(mColors);
+            mEndlessProgressDrawable = builder.build();
+            if (!mProgressBounds.isEmpty()) {
+                setEndlessProgressBounds();
+            }
+            mEndlessProgressDrawable.setCallback(this);
         }
+        return mEndlessProgressDrawable;
+    }
 
-        SmoothProgressDrawable.Builder builder = (new SmoothProgressDrawable.Builder(context))
-                .sectionsCount(2)
-                .speed(2f)
-                .progressiveStart(true)
-                .progressiveStartSpeed(2.5f)
-                .progressiveStopSpeed(2.5f)
-                .colors(new int[] { mColor1, mColor2, mColor3, mColor4 });
-        mEndlessProgressDrawable = builder.build();
-        mEndlessProgressDrawable.setCallback(this);
+    private void setEndlessProgressBounds() {
+        mEndlessProgressDrawable.setBounds(mProgressBounds);
+        mEndlessProgressDrawable.setStrokeWidth(mProgressBounds.height());
+    }
 
-        initialized = true;
+    @Override
+    protected int getStyleSpecType() {
+        return ButtonStyleSpec.TYPE_ACTION_PROCESS_BUTTON;
     }
 
     @Override
     protected boolean verifyDrawable(Drawable who) {
         boolean res = super.verifyDrawable(who);
-        return res || who == mEndlessProgressDrawable;
+        return res || (who != null && who == mEndlessProgressDrawable);
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable drawable) {
+        if (drawable == mEndlessProgressDrawable && mEndlessProgressDrawable.isRunning()) {
+            mEndlessFrameProduced = true;
+        }
+        super.invalidateDrawable(drawable);
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        if (who == mEndlessProgressDrawable) {
+            if (mEndlessAnimationPaused) {
+                // hold the frame back, it continues the animation from the same phase on resume
+                mPendingEndlessFrame = what;
+                return;
+            }
+            if (mEndlessFrameInterval > 0) {
+                when = Math.max(when, mLastEndlessFrameTime + mEndlessFrameInterval);
+                mLastEndlessFrameTime = when;
+            }
+            mEndlessFrame = what;
+        }
+        super.scheduleDrawable(who, what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        if (who == mEndlessProgressDrawable) {
+            if (what == mPendingEndlessFrame) {
+                mPendingEndlessFrame = null;
+            }
+            if (what == mEndlessFrame) {
+                mEndlessFrame = null;
+            }
+        }
+        super.unscheduleDrawable(who, what);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        updateEndlessAnimationPause();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mAttached = false;
+        updateEndlessAnimationPause();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateEndlessAnimationPause();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateEndlessAnimationPause();
+    }
+
+    private void updateEndlessAnimationPause() {
+        // may be called from the super constructor
+        if (!initialized) return;
+
+        boolean paused = !mAttached || getWindowVisibility() != VISIBLE || !isShown();
+        if (paused == mEndlessAnimationPaused) return;
+
+        mEndlessAnimationPaused = paused;
+        if (paused) {
+            updatePowerSaveModeReceiver();
+            if (mEndlessFrame != null) {
+                Runnable frame = mEndlessFrame;
+                super.unscheduleDrawable(mEndlessProgressDrawable, frame);
+                mEndlessFrame = null;
+                mPendingEndlessFrame = frame;
+            }
+        } else {
+            // power saving mode or animation settings could change while we were hidden
+            updateEndlessAnimation();
+
+            if (mPendingEndlessFrame != null) {
+                Runnable frame = mPendingEndlessFrame;
+                mPendingEndlessFrame = null;
+                scheduleDrawable(mEndlessProgressDrawable, frame, SystemClock.uptimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Limits frame rate of the endless indicator.
+     *
+     * @param maxFps max frames per second, 0 or less means no limit
+     */
+    public void setMaxFps(int maxFps) {
+        mMaxFps = maxFps;
+        updateEndlessAnimation();
+    }
+
+    public int getMaxFps() {
+        return mMaxFps;
+    }
+
+    /**
+     * When enabled (default), the endless indicator is drawn static if animations are turned off
+     * in system settings and runs at a low frame rate in power saving mode, picking up power
+     * saving mode changes while the indicator is shown.
+     */
+    public void setPowerSavingPolicyEnabled(boolean enabled) {
+        mPowerSavingPolicyEnabled = enabled;
+        updateEndlessAnimation();
+    }
+
+    /**
+     * @return delay between endless indicator frames in ms, 0 if frames are not limited or
+     * negative value to draw static indicator
+     */
+    protected long resolveEndlessFrameInterval() {
+        int fps = mMaxFps;
+        if (mPowerSavingPolicyEnabled) {
+            if (!areAnimatorsEnabled()) {
+                return STATIC_FRAME_INTERVAL;
+            }
+            if (isPowerSaveMode()) {
+                fps = fps > 0 ? Math.min(fps, POWER_SAVE_FPS) : POWER_SAVE_FPS;
+            }
+        }
+
+        if (fps <= 0 || fps >= ENDLESS_FPS) {
+            return 0;
+        }
+        return 1000 / fps;
+    }
+
+    private boolean areAnimatorsEnabled() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return true;
+        }
+        float scale = Settings.Global.getFloat(getContext().getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+        return scale != 0f;
+    }
+
+    @SuppressLint("NewApi")
+    private boolean isPowerSaveMode() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        PowerManager powerManager = (PowerManager) getContext().getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
     }
 
     public void setMode(Mode mode) {
+        if (mMode == mode) return;
+
         mMode = mode;
+        updateEndlessAnimation();
+        invalidate();
     }
 
     public void setColorScheme(int color1, int color2, int color3, int color4) {
-        mColor1 = color1;
-        mColor2 = color2;
-        mColor3 = color3;
-        mColor4 = color4;
-        mEndlessProgressDrawable.setColors(new int[] { mColor1, mColor2, mColor3, mColor4 });
+        mColors[0] = color1;
+        mColors[1] = color2;
+        mColors[2] = color3;
+        mColors[3] = color4;
+        if (mEndlessProgressDrawable != null) {
+            mEndlessProgressDrawable.setColors(mColors);
+        }
     }
 
     @Override
-    public void drawProgress(Canvas canvas) {
-        if (getBackground() != getNormalDrawable()) {
-            setBackgroundCompat(getNormalDrawable());
+    protected void onStateChanged(State oldState, State newState) {
+        super.onStateChanged(oldState, newState);
+        updateEndlessAnimation();
+    }
+
+    private void updateEndlessAnimation() {
+        updatePowerSaveModeReceiver();
+
+        boolean endless = getState() == State.PROGRESS && mMode == Mode.ENDLESS;
+        if (endless) {
+            getEndlessProgressDrawable();
+            updateEndlessFrameInterval();
+        } else if (mEndlessProgressDrawable == null) {
+            return;
+        }
+
+        boolean shouldRun = endless && mEndlessFrameInterval != STATIC_FRAME_INTERVAL;
+        if (shouldRun != mEndlessProgressDrawable.isRunning()) {
+            if (shouldRun) {
+                mEndlessProgressDrawable.start();
+            } else {
+                mEndlessProgressDrawable.stop();
+            }
         }
+    }
+
+    @SuppressLint("NewApi")
+    private void updatePowerSaveModeReceiver() {
+        boolean listen = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && mPowerSavingPolicyEnabled && !mEndlessAnimationPaused
+                && getState() == State.PROGRESS && mMode == Mode.ENDLESS;
+        if (listen == (mPowerSaveModeReceiver != null)) return;
+
+        if (listen) {
+            mPowerSaveModeReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    updateEndlessAnimation();
+                }
+            };
+            getContext().registerReceiver(mPowerSaveModeReceiver,
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        } else {
+            getContext().unregisterReceiver(mPowerSaveModeReceiver);
+            mPowerSaveModeReceiver = null;
+        }
+    }
+
+    private void updateEndlessFrameInterval() {
+        long interval = resolveEndlessFrameInterval();
+        if (interval == mEndlessFrameInterval) return;
 
+        mEndlessFrameInterval = interval;
+        // keep visual speed of the animation when it gets less frames
+        float frameScale = interval > 0 ? interval * ENDLESS_FPS / 1000f : 1f;
+        mEndlessProgressDrawable.setSpeed(ENDLESS_SPEED * Math.max(1f, frameScale));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        double indicatorHeightPercent = 0.08; // 8%
+        int bottom = (int) (h - h * indicatorHeightPercent);
+        mProgressBounds.set(0, bottom, w, h);
+
+        overlay.setBounds(mProgressBounds);
+        mLineProgressDrawable.setBounds(mProgressBounds);
+        if (mEndlessProgressDrawable != null) {
+            setEndlessProgressBounds();
+        }
+    }
+
+    @Override
+    public void drawProgress(Canvas canvas) {
         switch (mMode) {
             case ENDLESS:
-                drawEndlessProgress(canvas);
+                boolean frame = drawEndlessProgress(canvas) && mEndlessFrameProduced;
+                mEndlessFrameProduced = false;
+                // redraws for other reasons and static indicator are not animation frames
+                MetricsListener metricsListener = getMetricsListener();
+                if (frame && metricsListener != null) {
+                    metricsListener.onEndlessFrame(this);
+                }
                 break;
             case PROGRESS:
                 drawLineProgress(canvas);
@@ -148,45 +417,40 @@ public class ActionProcessButton extends ProcessButton {
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-
-        if (isProgressState() && mMode == Mode.ENDLESS) {
-            if (!mEndlessProgressDrawable.isRunning()) {
-                mEndlessProgressDrawable.start();
-            }
-        } else {
-            mEndlessProgressDrawable.stop();
+    protected boolean getProgressDirtyRect(float oldFraction, float newFraction, Rect outRect) {
+        if (mMode == Mode.ENDLESS) {
+            // endless indicator doesn't depend on progress value
+            outRect.setEmpty();
+            return true;
         }
+
+        int width = mProgressBounds.width();
+        mLineProgressDrawable.getDirtyRect(getProgressEdge(oldFraction, width),
+                getProgressEdge(newFraction, width), outRect);
+        return true;
     }
 
     private void drawLineProgress(Canvas canvas) {
-        float scale = (float) getProgress() / (float) getMaxProgress();
-        float indicatorWidth = (float) getMeasuredWidth() * scale;
-
-        getProgressBounds(rect);
-        overlay.setBounds(rect.left, rect.top, rect.right, rect.bottom);
         overlay.draw(canvas);
 
-        getProgressDrawable().setBounds(rect.left, rect.top, (int) indicatorWidth, rect.bottom);
-        getProgressDrawable().draw(canvas);
+        mLineProgressDrawable.setFill(getProgressDrawable());
+        mLineProgressDrawable.setEdge(getProgressEdge(getDrawnProgressFraction(), mProgressBounds.width()));
+        mLineProgressDrawable.draw(canvas);
     }
 
-    private void drawEndlessProgress(Canvas canvas) {
-        getProgressBounds(rect);
-        mEndlessProgressDrawable.setBounds(rect);
-        mEndlessProgressDrawable.setStrokeWidth(rect.height());
-        if (mEndlessProgressDrawable.isRunning()) {
+    /**
+     * @return true if a frame of the running animation was drawn
+     */
+    private boolean drawEndlessProgress(Canvas canvas) {
+        if (mEndlessProgressDrawable != null && mEndlessProgressDrawable.isRunning()) {
             int state = canvas.save();
             mEndlessProgressDrawable.draw(canvas);
             canvas.restoreToCount(state);
+            return true;
+        } else if (mEndlessFrameInterval == STATIC_FRAME_INTERVAL) {
+            overlay.draw(canvas);
         }
+        return false;
     }
 
-    private void getProgressBounds(Rect rect) {
-        double indicatorHeightPercent = 0.08; // 5%
-        int bottom = (int) (getMeasuredHeight() - getMeasuredHeight() * indicatorHeightPercent);
-        rect.set(0, bottom, getMeasuredWidth(), getMeasuredHeight());
-    }
-
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package com.dd.processbutton.iml;
 
 import com.dd.processbutton.ProcessButton;
+import com.dd.processbutton.ProcessDrawable;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 
 /*
@@ -32,6 +34,8 @@ import android.util.AttributeSet;
 
 public class GenerateProcessButton extends ProcessButton {
 
+    private final ProcessDrawable mProcessDrawable = new ProcessDrawable(ProcessDrawable.VERTICAL);
+
     public GenerateProcessButton(Context context) {
         super(context);
     }
@@ -46,11 +50,24 @@ public class GenerateProcessButton extends ProcessButton {
 
     @Override
     public void drawProgress(Canvas canvas) {
-        float scale = (float) getProgress() / (float) getMaxProgress();
-        float indicatorHeight = (float) getMeasuredHeight() * scale;
+        mProcessDrawable.setFill(getProgressDrawable());
+        mProcessDrawable.setEdge(getProgressEdge(getDrawnProgressFraction(),
+                mProcessDrawable.getBounds().height()));
+        mProcessDrawable.draw(canvas);
+    }
+
+    @Override
+    protected boolean getProgressDirtyRect(float oldFraction, float newFraction, Rect outRect) {
+        int length = mProcessDrawable.getBounds().height();
+        mProcessDrawable.getDirtyRect(getProgressEdge(oldFraction, length),
+                getProgressEdge(newFraction, length), outRect);
+        return true;
+    }
 
-        getProgressDrawable().setBounds(0, 0, getMeasuredWidth(), (int) indicatorHeight);
-        getProgressDrawable().draw(canvas);
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mProcessDrawable.setBounds(0, 0, w, h);
     }
 
 }
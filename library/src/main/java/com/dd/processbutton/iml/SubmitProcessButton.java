@@ -1,9 +1,11 @@
 package com.dd.processbutton.iml;
 
 import com.dd.processbutton.ProcessButton;
+import com.dd.processbutton.ProcessDrawable;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 
 /*
@@ -32,6 +34,8 @@ import android.util.AttributeSet;
 
 public class SubmitProcessButton extends ProcessButton {
 
+    private final ProcessDrawable mProcessDrawable = new ProcessDrawable(ProcessDrawable.HORIZONTAL);
+
     public SubmitProcessButton(Context context) {
         super(context);
     }
@@ -46,11 +50,24 @@ public class SubmitProcessButton extends ProcessButton {
 
     @Override
     public void drawProgress(Canvas canvas) {
-        float scale = (float) getProgress() / (float) getMaxProgress();
-        float indicatorWidth = (float) getMeasuredWidth() * scale;
+        mProcessDrawable.setFill(getProgressDrawable());
+        mProcessDrawable.setEdge(getProgressEdge(getDrawnProgressFraction(),
+                mProcessDrawable.getBounds().width()));
+        mProcessDrawable.draw(canvas);
+    }
+
+    @Override
+    protected boolean getProgressDirtyRect(float oldFraction, float newFraction, Rect outRect) {
+        int length = mProcessDrawable.getBounds().width();
+        mProcessDrawable.getDirtyRect(getProgressEdge(oldFraction, length),
+                getProgressEdge(newFraction, length), outRect);
+        return true;
+    }
 
-        getProgressDrawable().setBounds(0, 0, (int) indicatorWidth, getMeasuredHeight());
-        getProgressDrawable().draw(canvas);
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mProcessDrawable.setBounds(0, 0, w, h);
     }
 
 }
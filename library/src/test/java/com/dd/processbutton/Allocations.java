@@ -0,0 +1,141 @@
+package com.dd.processbutton;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts bytes allocated by the calling thread, a hot path passes if it allocates nothing
+ * after warm-up. HotSpot removes allocations which don't escape, ART doesn't, so unit tests
+ * run with escape analysis turned off, see {@code build.gradle}.
+ */
+public final class Allocations {
+
+    private static final int WARM_UP_ITERATIONS = 5000;
+    private static final int ROUNDS = 3;
+
+    private Allocations() {
+    }
+
+    /**
+     * @return bytes allocated per call of {@code body}, rounded down, after running it
+     * {@link #WARM_UP_ITERATIONS} times to let lazy initialization and JIT happen. The least of
+     * {@link #ROUNDS} measurements is taken, a one-off allocation of the VM doesn't show up
+     * in all of them while a per-call one does.
+     */
+    public static long perCall(int iterations, Runnable body) {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            body.run();
+        }
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                body.run();
+            }
+            least = Math.min(least, threads.getThreadAllocatedBytes(threadId) - start);
+        }
+        return least / iterations;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Per thread allocation counting is not supported",
+                threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(sunThreads.isThreadAllocatedMemorySupported());
+        sunThreads.setThreadAllocatedMemoryEnabled(true);
+        return sunThreads;
+    }
+
+    /**
+     * Drops everything drawn on it, so allocations of Robolectric's recording canvas don't
+     * count against the code under test.
+     */
+    public static class NoOpCanvas extends Canvas {
+
+        @Override
+        public int save() {
+            return 1;
+        }
+
+        @Override
+        public void restore() {
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+        }
+
+        @Override
+        public boolean clipRect(Rect rect) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(RectF rect) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(int left, int top, int right, int bottom) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(float left, float top, float right, float bottom) {
+            return true;
+        }
+
+        @Override
+        public void drawRect(Rect rect, Paint paint) {
+        }
+
+        @Override
+        public void drawRect(RectF rect, Paint paint) {
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        }
+
+        @Override
+        public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        }
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        }
+
+        @Override
+        public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        }
+
+        @Override
+        public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+        }
+
+        @Override
+        public void drawTextRun(CharSequence text, int start, int end, int contextStart,
+                                int contextEnd, float x, float y, boolean isRtl, Paint paint) {
+        }
+    }
+}
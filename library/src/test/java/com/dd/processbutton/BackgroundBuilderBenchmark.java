@@ -0,0 +1,116 @@
+package com.dd.processbutton;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backgrounds and shapes of {@link BackgroundBuilder}, built fresh and taken from
+ * {@link DrawableCache}, plus color resolution and corner radius propagation. Builds the
+ * tree of the SDK Robolectric runs. Runs under Robolectric, see {@link RobolectricBenchmarksTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BackgroundBuilderBenchmark {
+
+    private static final int[] COLOR_ATTRS = {android.R.attr.textColor};
+
+    private BackgroundBuilder builder;
+    private ButtonStyleSpec spec;
+
+    private TypedArray resolvedColor;
+    private TypedArray missingColor;
+
+    private GradientDrawable shape;
+    private ColorStateList[] colors;
+    private int color;
+
+    private Drawable background;
+    private float cornerRadius;
+
+    @Setup
+    public void setUp() {
+        Context context = RuntimeEnvironment.application;
+        builder = new BackgroundBuilder(context);
+        spec = ButtonStyleSpec.obtain(context, null, ButtonStyleSpec.TYPE_PROCESS_BUTTON);
+
+        resolvedColor = context.obtainStyledAttributes(android.R.style.TextAppearance, COLOR_ATTRS);
+        missingColor = context.obtainStyledAttributes(null, COLOR_ATTRS, 0, 0);
+
+        shape = new GradientDrawable();
+        colors = new ColorStateList[]{
+                ColorStateList.valueOf(Color.RED),
+                ColorStateList.valueOf(Color.BLUE)
+        };
+
+        DrawableCache.clear();
+        background = builder.createBackground(spec);
+    }
+
+    @Benchmark
+    public Drawable createBackgroundCached() {
+        return builder.createBackground(spec);
+    }
+
+    @Benchmark
+    public Drawable createBackgroundUncached() {
+        DrawableCache.clear();
+        return builder.createBackground(spec);
+    }
+
+    @Benchmark
+    public GradientDrawable createShapeDrawableCached() {
+        return builder.createShapeDrawable(R.drawable.rect_progress, spec.getProgressColor(),
+                spec.getCornerRadius());
+    }
+
+    @Benchmark
+    public GradientDrawable createShapeDrawableUncached() {
+        DrawableCache.clear();
+        return builder.createShapeDrawable(R.drawable.rect_progress, spec.getProgressColor(),
+                spec.getCornerRadius());
+    }
+
+    @Benchmark
+    public ColorStateList getColorResolved() {
+        return BackgroundBuilder.getColor(resolvedColor, 0, Color.BLACK);
+    }
+
+    @Benchmark
+    public ColorStateList getColorDefault() {
+        return BackgroundBuilder.getColor(missingColor, 0, Color.BLACK);
+    }
+
+    @Benchmark
+    public GradientDrawable setColor() {
+        color = (color + 1) % colors.length;
+        BackgroundBuilder.setColor(shape, colors[color]);
+        return shape;
+    }
+
+    @Benchmark
+    public Drawable setCornerRadius() {
+        cornerRadius = cornerRadius == 4f ? 8f : 4f;
+        builder.setCornerRadius(background, cornerRadius);
+        return background;
+    }
+}
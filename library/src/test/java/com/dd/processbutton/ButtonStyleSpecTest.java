@@ -0,0 +1,57 @@
+package com.dd.processbutton;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.view.ContextThemeWrapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ButtonStyleSpecTest {
+
+    @Test
+    public void specIsCachedPerTheme() {
+        Context first = new ContextThemeWrapper(RuntimeEnvironment.application, android.R.style.Theme_Holo);
+        Context second = new ContextThemeWrapper(RuntimeEnvironment.application, android.R.style.Theme_Holo);
+
+        ButtonStyleSpec spec = obtain(first);
+        assertSame(spec, obtain(first));
+        assertNotSame(spec, obtain(second));
+    }
+
+    @Test
+    public void specIsCachedPerConfiguration() {
+        Context context = RuntimeEnvironment.application;
+        ButtonStyleSpec spec = obtain(context);
+        assertSame(spec, obtain(context));
+
+        Configuration configuration = new Configuration(context.getResources().getConfiguration());
+        configuration.setLocale(Locale.JAPAN);
+        final Resources localizedResources = new Resources(context.getAssets(),
+                context.getResources().getDisplayMetrics(), configuration);
+        Context localized = new ContextWrapper(context) {
+            @Override
+            public Resources getResources() {
+                return localizedResources;
+            }
+        };
+        assertSame(context.getTheme(), localized.getTheme());
+        assertNotSame(spec, obtain(localized));
+    }
+
+    private static ButtonStyleSpec obtain(Context context) {
+        return ButtonStyleSpec.obtain(context, null, ButtonStyleSpec.TYPE_PROCESS_BUTTON);
+    }
+}
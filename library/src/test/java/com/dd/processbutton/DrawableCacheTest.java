@@ -0,0 +1,79 @@
+package com.dd.processbutton;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DrawableCacheTest {
+
+    private final ColorStateList color = ColorStateList.valueOf(Color.RED);
+    private BackgroundBuilder builder;
+
+    @Before
+    public void setUp() {
+        DrawableCache.clear();
+        builder = new BackgroundBuilder(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void shapesShareCachedState() {
+        GradientDrawable first = builder.createShapeDrawable(R.drawable.rect_progress, color, 4f);
+        GradientDrawable second = builder.createShapeDrawable(R.drawable.rect_progress, color, 4f);
+
+        assertNotSame(first, second);
+        assertSame(first.getConstantState(), second.getConstantState());
+    }
+
+    @Test
+    public void mutatedShapeDoesNotChangeCachedState() {
+        GradientDrawable built = builder.createShapeDrawable(R.drawable.rect_progress, color, 4f);
+        Drawable.ConstantState cachedState = built.getConstantState();
+
+        built.mutate();
+        built.setCornerRadius(20f);
+
+        assertNotSame(cachedState, built.getConstantState());
+        GradientDrawable next = builder.createShapeDrawable(R.drawable.rect_progress, color, 4f);
+        assertSame(cachedState, next.getConstantState());
+    }
+
+    @Test
+    public void cornerRadiusChangeDetachesStateDrawablesOfOneButton() {
+        ProcessButton first = new TestProcessButton();
+        ProcessButton second = new TestProcessButton();
+        first.getCompleteDrawable();
+        second.getCompleteDrawable();
+
+        first.setCornerRadius(20);
+
+        assertNotSame(first.getCompleteDrawable().getConstantState(),
+                second.getCompleteDrawable().getConstantState());
+        assertSame(second.getCompleteDrawable().getConstantState(),
+                new TestProcessButton().getCompleteDrawable().getConstantState());
+    }
+
+    private static class TestProcessButton extends ProcessButton {
+
+        TestProcessButton() {
+            super(RuntimeEnvironment.application);
+        }
+
+        @Override
+        public void drawProgress(Canvas canvas) {
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.dd.processbutton;
+
+import android.app.Activity;
+import android.widget.FrameLayout;
+
+import com.dd.processbutton.iml.SubmitProcessButton;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Frame callbacks of the group and the shared auto-resume callback both run on the main
+ * looper scheduler, so an empty scheduler means nothing of the group is posted.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProcessButtonGroupTest {
+
+    private static final long FRAME_MILLIS = 17;
+    // default of pb_autoResumeToNormalDelay
+    private static final long AUTO_RESUME_DELAY = 2000;
+
+    private ProcessButtonGroup group;
+    private Scheduler scheduler;
+
+    @Before
+    public void setUp() {
+        group = new ProcessButtonGroup();
+        scheduler = Robolectric.getForegroundThreadScheduler();
+        // run frame callbacks only when the test advances the clock
+        scheduler.pause();
+    }
+
+    @Test
+    public void updatesWithinAFrameAreCoalesced() {
+        ProcessButton button = new SubmitProcessButton(RuntimeEnvironment.application);
+        ProcessButtonMetrics metrics = new ProcessButtonMetrics();
+        button.setMetricsListener(metrics);
+        int slot = group.register(button);
+
+        group.setProgress(slot, 10);
+        group.setProgress(slot, 20);
+        group.setProgress(slot, 30);
+        assertEquals(0, button.getProgress());
+
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(30, button.getProgress());
+        assertEquals(1, metrics.getProgressUpdatesReceived());
+
+        // only the latest value is applied, even if an earlier one was terminal
+        group.setProgress(slot, 100);
+        group.setProgress(slot, 60);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(60, button.getProgress());
+        assertEquals(0, metrics.getStateEntries(ProcessButton.State.COMPLETE));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void freedSlotIsReusedWithoutItsPendingProgress() {
+        ProcessButton first = new SubmitProcessButton(RuntimeEnvironment.application);
+        ProcessButton second = new SubmitProcessButton(RuntimeEnvironment.application);
+        ProcessButton third = new SubmitProcessButton(RuntimeEnvironment.application);
+        int firstSlot = group.register(first);
+        int secondSlot = group.register(second);
+        assertNotEquals(firstSlot, secondSlot);
+        assertEquals(firstSlot, group.register(first));
+
+        group.setProgress(firstSlot, 40);
+        group.unregister(firstSlot);
+        int thirdSlot = group.register(third);
+        assertEquals(firstSlot, thirdSlot);
+        assertEquals(third, group.getButton(thirdSlot));
+
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(0, first.getProgress());
+        assertEquals(0, third.getProgress());
+
+        group.setProgress(thirdSlot, 60);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(60, third.getProgress());
+        assertEquals(ProcessButtonGroup.NO_SLOT, group.getSlot(first));
+    }
+
+    @Test
+    public void slotsGrowBeyondInitialCapacity() {
+        ProcessButton[] buttons = new ProcessButton[20];
+        int[] slots = new int[buttons.length];
+        for (int i = 0; i < buttons.length; i++) {
+            buttons[i] = new SubmitProcessButton(RuntimeEnvironment.application);
+            slots[i] = group.register(buttons[i]);
+            group.setProgress(slots[i], i + 1);
+        }
+
+        scheduler.advanceBy(FRAME_MILLIS);
+        for (int i = 0; i < buttons.length; i++) {
+            assertEquals(i, slots[i]);
+            assertEquals(i + 1, buttons[i].getProgress());
+        }
+    }
+
+    @Test
+    public void sharedAutoResumeReturnsButtonsToNormal() {
+        group.setSharedAutoResumeEnabled(true);
+        ProcessButton complete = attachedButton();
+        ProcessButton error = attachedButton();
+        group.setProgress(group.register(complete), 100);
+        group.setProgress(group.register(error), -1);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(ProcessButton.State.COMPLETE, complete.getState());
+        assertEquals(ProcessButton.State.ERROR, error.getState());
+
+        scheduler.advanceBy(AUTO_RESUME_DELAY);
+        assertEquals(ProcessButton.State.NORMAL, complete.getState());
+        assertEquals(ProcessButton.State.NORMAL, error.getState());
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void cancelledAutoResumeLeavesNothingPosted() {
+        group.setSharedAutoResumeEnabled(true);
+        ProcessButton button = attachedButton();
+        int slot = group.register(button);
+        group.setProgress(slot, 100);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(1, scheduler.size());
+
+        group.setProgress(slot, 50);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(0, scheduler.size());
+
+        // pending return moves to the scheduler of the button itself
+        group.setProgress(slot, -1);
+        scheduler.advanceBy(FRAME_MILLIS);
+        group.unregister(slot);
+        scheduler.advanceBy(AUTO_RESUME_DELAY);
+        assertEquals(ProcessButton.State.NORMAL, button.getState());
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void detachedButtonsPostNoAutoResume() {
+        group.setSharedAutoResumeEnabled(true);
+        ProcessButton button = new SubmitProcessButton(RuntimeEnvironment.application);
+        button.setAutoResumeToNormalState(true);
+        group.setProgress(group.register(button), 100);
+
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(0, scheduler.size());
+        scheduler.advanceBy(AUTO_RESUME_DELAY);
+        assertEquals(ProcessButton.State.COMPLETE, button.getState());
+    }
+
+    private static ProcessButton attachedButton() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout container = new FrameLayout(activity);
+        activity.setContentView(container);
+        ProcessButton button = new SubmitProcessButton(activity);
+        button.setAutoResumeToNormalState(true);
+        container.addView(button);
+        return button;
+    }
+}
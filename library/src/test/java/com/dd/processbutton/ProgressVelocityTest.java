@@ -0,0 +1,55 @@
+package com.dd.processbutton;
+
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.LinearInterpolator;
+
+import com.dd.processbutton.iml.SubmitProcessButton;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressVelocityTest {
+
+    @Test
+    public void peakSlopeOfLinearIsOne() {
+        assertEquals(1f, ProcessButton.getPeakSlope(new LinearInterpolator()), 0.01f);
+    }
+
+    @Test
+    public void peakSlopeOfDecelerateIsItsStartingSpeed() {
+        assertEquals(2f, ProcessButton.getPeakSlope(new DecelerateInterpolator()), 0.05f);
+        assertEquals(3f, ProcessButton.getPeakSlope(new DecelerateInterpolator(1.5f)), 0.1f);
+    }
+
+    @Test
+    public void durationKeepsPeakSpeedWithinCap() {
+        // half of the range at half of the range per second takes a second on average
+        long averageDuration = 1000;
+
+        // the decelerate curve starts twice as fast as its average
+        assertTrue(animateToHalf(null).getDuration() >= averageDuration * 1.95f);
+        assertEquals(averageDuration, animateToHalf(new LinearInterpolator()).getDuration(), 20);
+    }
+
+    private static ValueAnimator animateToHalf(TimeInterpolator interpolator) {
+        SubmitProcessButton button = new SubmitProcessButton(RuntimeEnvironment.application);
+        button.setProgressInterpolationEnabled(true);
+        if (interpolator != null) {
+            button.setProgressInterpolator(interpolator);
+        }
+        button.setMaxProgressVelocity(0.5f);
+        button.setProgress(50);
+        return ReflectionHelpers.getField(button, "mProgressAnimator");
+    }
+}
@@ -0,0 +1,40 @@
+package com.dd.processbutton;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+/**
+ * Runs JMH benchmarks of code that needs Android framework classes inside of the Robolectric
+ * sandbox. Skipped unless the {@code benchmark.results} system property is set, see
+ * {@code build.gradle}. Benchmarks run in this VM, a forked one would be outside of the
+ * sandbox, so compare results between versions rather than with on-device numbers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class RobolectricBenchmarksTest {
+
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        String results = System.getProperty("benchmark.results");
+        Assume.assumeNotNull(results);
+        new File(results).getAbsoluteFile().getParentFile().mkdirs();
+
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", ".*Benchmark"))
+                .forks(0)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results)
+                .build();
+        new Runner(options).run();
+    }
+}
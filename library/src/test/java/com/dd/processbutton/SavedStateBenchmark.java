@@ -0,0 +1,93 @@
+package com.dd.processbutton;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.dd.processbutton.iml.SubmitProcessButton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save and restore of a {@link ProcessButton} state, alone and as a round trip through a
+ * {@link Parcel}. Runs under Robolectric, see {@link RobolectricBenchmarksTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SavedStateBenchmark {
+
+    private ProcessButton button;
+    private Parcelable buttonState;
+
+    @Setup
+    public void setUp() {
+        registerFlatButtonStateCreator();
+        button = new SubmitProcessButton(RuntimeEnvironment.application);
+        button.setProgress(50);
+        buttonState = button.onSaveInstanceState();
+
+        if (saveParcelRestore().getProgress() != 50) {
+            throw new IllegalStateException("Progress was lost in the parcel round trip");
+        }
+    }
+
+    @Benchmark
+    public ProcessButton saveParcelRestore() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            button.onSaveInstanceState().writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            button.onRestoreInstanceState(ProcessButton.SavedState.CREATOR.createFromParcel(parcel));
+            return button;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Benchmark
+    public Parcelable saveInstanceState() {
+        return button.onSaveInstanceState();
+    }
+
+    @Benchmark
+    public ProcessButton restoreInstanceState() {
+        button.onRestoreInstanceState(buttonState);
+        return button;
+    }
+
+    /**
+     * The JVM, unlike ART, refuses {@link Parcel} reflective access to {@code CREATOR} of the
+     * package-private {@link FlatButton.SavedState}. Puts it into the creator cache of Parcel,
+     * where the lookup would have stored it.
+     */
+    @SuppressWarnings("rawtypes")
+    private static void registerFlatButtonStateCreator() {
+        Map<ClassLoader, HashMap<String, Parcelable.Creator>> creators =
+                ReflectionHelpers.getStaticField(Parcel.class, "mCreators");
+        ClassLoader loader = ProcessButton.SavedState.class.getClassLoader();
+        synchronized (creators) {
+            HashMap<String, Parcelable.Creator> loaderCreators = creators.get(loader);
+            if (loaderCreators == null) {
+                loaderCreators = new HashMap<>();
+                creators.put(loader, loaderCreators);
+            }
+            loaderCreators.put(FlatButton.SavedState.class.getName(), FlatButton.SavedState.CREATOR);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.dd.processbutton;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+
+import com.dd.processbutton.iml.SubmitProcessButton;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Counts state drawables a button asks {@link BackgroundBuilder} for, every request builds
+ * a drawable or takes a new instance from the cache.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class StateDrawablesTest {
+
+    private static final int BUTTONS = 10;
+
+    @Before
+    public void setUp() {
+        DrawableCache.clear();
+    }
+
+    @Test
+    public void normalToCompleteCreatesOnlyCompleteDrawable() {
+        CountingButton button = new CountingButton(RuntimeEnvironment.application);
+        Canvas canvas = new Allocations.NoOpCanvas();
+
+        button.draw(canvas);
+        assertEquals(Collections.emptyList(), button.created);
+
+        button.setProgress(100);
+        button.draw(canvas);
+        assertEquals(Arrays.asList(R.drawable.rect_complete), button.created);
+
+        button.setCornerRadius(12);
+        button.setProgress(0);
+        button.setProgress(100);
+        button.draw(canvas);
+        assertEquals(Arrays.asList(R.drawable.rect_complete), button.created);
+    }
+
+    @Test
+    public void buttonsShareOneProgressDrawableState() {
+        Canvas canvas = new Allocations.NoOpCanvas();
+        Drawable.ConstantState state = null;
+        for (int i = 0; i < BUTTONS; i++) {
+            CountingButton button = new CountingButton(RuntimeEnvironment.application);
+            button.layout(0, 0, 200, 60);
+            button.setProgress(50);
+            button.drawProgress(canvas);
+
+            assertEquals(Arrays.asList(R.drawable.rect_progress), button.created);
+            if (state == null) {
+                state = button.getProgressDrawable().getConstantState();
+            }
+            assertSame(state, button.getProgressDrawable().getConstantState());
+        }
+    }
+
+    private static class CountingButton extends SubmitProcessButton {
+
+        // may be used from the super constructor
+        List<Integer> created;
+
+        CountingButton(Context context) {
+            super(context);
+            if (created == null) {
+                created = new ArrayList<>();
+            }
+        }
+
+        @Override
+        protected GradientDrawable createShapeDrawable(int id, ColorStateList color) {
+            if (created == null) {
+                created = new ArrayList<>();
+            }
+            created.add(id);
+            return super.createShapeDrawable(id, color);
+        }
+    }
+}
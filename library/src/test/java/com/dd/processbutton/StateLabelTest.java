@@ -0,0 +1,56 @@
+package com.dd.processbutton;
+
+import android.graphics.Canvas;
+import android.text.TextPaint;
+import android.view.Gravity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class StateLabelTest {
+
+    private static final int WIDTH = 200;
+
+    @Test
+    public void measuredAgainOnlyAfterTextPaintOrWidthChange() {
+        StateLabel label = new StateLabel();
+        label.setText("Loading");
+        assertFalse(label.isMeasured(WIDTH));
+
+        label.measure(new TextPaint(), WIDTH, Gravity.CENTER);
+        assertTrue(label.isMeasured(WIDTH));
+        assertFalse(label.isMeasured(WIDTH / 2));
+
+        label.invalidate();
+        assertFalse(label.isMeasured(WIDTH));
+
+        label.measure(new TextPaint(), WIDTH, Gravity.CENTER);
+        label.setText("Done");
+        assertFalse(label.isMeasured(WIDTH));
+    }
+
+    @Test
+    public void drawDoesNotAllocate() {
+        final StateLabel label = new StateLabel();
+        label.setText("Loading");
+        label.measure(new TextPaint(), WIDTH, Gravity.CENTER);
+        final Canvas canvas = new Allocations.NoOpCanvas();
+
+        long bytesPerDraw = Allocations.perCall(10000, new Runnable() {
+            @Override
+            public void run() {
+                label.draw(canvas, 0, 0, 60, Gravity.CENTER);
+            }
+        });
+
+        assertEquals(0, bytesPerDraw);
+    }
+}
@@ -0,0 +1,227 @@
+package com.dd.processbutton.iml;
+
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.widget.FrameLayout;
+
+import com.dd.processbutton.Allocations;
+import com.dd.processbutton.BuildConfig;
+import com.dd.processbutton.ProcessButton;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Recycles one attached button through thousands of rows, the way a list adapter does.
+ * <p>
+ * Some framework calls a bind has to make allocate under Robolectric, their shadows call
+ * through with reflection. Every bind is measured against the same calls made directly on the
+ * button, so it passes if it allocates nothing beyond them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class BindStressTest {
+
+    private static final int BINDS = 5000;
+    private static final long FRAME_MILLIS = 17;
+    // default of pb_autoResumeToNormalDelay
+    private static final long AUTO_RESUME_DELAY = 2000;
+    // Robolectric's looper bookkeeping of a post varies by up to ~200 bytes between runs
+    private static final long POST_VARIANCE_BYTES = 256;
+
+    // labels are the same for all rows, adapters take them from resources once
+    private static final String NORMAL = "Upload";
+    private static final String LOADING = "Uploading";
+    private static final String COMPLETE = "Uploaded";
+    private static final String ERROR = "Failed";
+
+    private static final int[] ALL_ROWS = {0, 40, 100, -1, 75, 0, 100, 100, -1, -1, 0, 0};
+    // every bind of these pairs switches the state
+    private static final int[][] STATE_CHANGES = {
+            {0, 40}, {0, 100}, {0, -1}, {40, 100}, {40, -1}, {100, -1}
+    };
+
+    private ProcessButton button;
+    private ShadowContentResolver contentResolver;
+    private Scheduler scheduler;
+
+    @Before
+    public void setUp() {
+        FrameLayout container = TestButtons.attachedContainer();
+        button = new SubmitProcessButton(container.getContext());
+        button.setAutoResumeToNormalState(true);
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        TestButtons.layout(button);
+        contentResolver = shadowOf(container.getContext().getContentResolver());
+
+        scheduler = Robolectric.getForegroundThreadScheduler();
+        // a list binds many rows per frame, layout and drawing run once after them
+        scheduler.pause();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.unPause();
+    }
+
+    @Test
+    public void rebindIntoShownStateAllocatesOnlyInvalidation() {
+        long invalidate = invalidateBytes();
+
+        assertBindBytesAtMost("normal", invalidate, 0);
+        // loading text doesn't change with progress
+        assertBindBytesAtMost("loading", invalidate, 40, 75);
+    }
+
+    @Test
+    public void rebindIntoCompleteOrErrorAllocatesOnlyAutoResume() {
+        // auto-resume of the row is posted again, Robolectric's scheduler allocates an entry
+        // per post, the message queue reuses messages
+        long autoResume = invalidateBytes() + autoResumeBytes() + POST_VARIANCE_BYTES;
+
+        assertBindBytesAtMost("complete", autoResume, 100);
+        assertBindBytesAtMost("error", autoResume, -1);
+    }
+
+    @Test
+    public void stateChangeAllocatesOnlyTextAndBackground() {
+        // TextView lays out the new text, a state change can't avoid that without
+        // setStateTextDrawingEnabled(true)
+        long stateChange = invalidateBytes() + autoResumeBytes() + setTextBytes() + levelBytes()
+                + POST_VARIANCE_BYTES;
+
+        for (int[] rows : STATE_CHANGES) {
+            assertBindBytesAtMost(rows[0] + " <-> " + rows[1], stateChange, rows);
+        }
+    }
+
+    @Test
+    public void bindLeavesNothingBehind() {
+        for (int i = 0; i < BINDS; i++) {
+            int progress = ALL_ROWS[i % ALL_ROWS.length];
+            String normal = NORMAL + i % 3;
+            button.bind(progress, normal, LOADING, COMPLETE, ERROR);
+
+            assertEquals(progress, button.getProgress());
+            String expected = progress == 0 ? normal
+                    : progress == 100 ? COMPLETE
+                    : progress < 0 ? ERROR
+                    : LOADING;
+            assertEquals(expected, button.getText().toString());
+            // at most the frame of the bound rows and the auto-resume of the shown one
+            assertTrue("Tasks left after bind " + i + ": " + scheduler.size(), scheduler.size() <= 2);
+        }
+
+        button.bind(0, NORMAL, LOADING, COMPLETE, ERROR);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(NORMAL, button.getText().toString());
+        assertEquals(0, scheduler.size());
+
+        // only the auto-resume of the last complete or error row stays
+        button.bind(100, NORMAL, LOADING, COMPLETE, ERROR);
+        button.bind(-1, NORMAL, LOADING, COMPLETE, ERROR);
+        button.bind(-1, NORMAL, LOADING, COMPLETE, ERROR);
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(1, scheduler.size());
+
+        scheduler.advanceBy(AUTO_RESUME_DELAY);
+        assertEquals(ProcessButton.State.NORMAL, button.getState());
+        assertEquals(NORMAL, button.getText().toString());
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(0, scheduler.size());
+    }
+
+    private void assertBindBytesAtMost(String rowsName, long maxBytes, final int... rows) {
+        long bytesPerBind = perCall(new Runnable() {
+            int row;
+
+            @Override
+            public void run() {
+                row = (row + 1) % rows.length;
+                button.bind(rows[row], NORMAL, LOADING, COMPLETE, ERROR);
+            }
+        });
+
+        assertTrue("Bind of " + rowsName + " rows allocates " + bytesPerBind + " bytes, at most "
+                + maxBytes + " expected", bytesPerBind <= maxBytes);
+    }
+
+    private long invalidateBytes() {
+        return perCall(new Runnable() {
+            @Override
+            public void run() {
+                button.invalidate();
+            }
+        });
+    }
+
+    /**
+     * Goes through the handler like the default state scheduler, {@code View.postDelayed} has
+     * a cheaper shadow.
+     */
+    private long autoResumeBytes() {
+        final Handler handler = button.getHandler();
+        return perCall(new Runnable() {
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+
+            @Override
+            public void run() {
+                handler.removeCallbacks(task);
+                handler.postDelayed(task, AUTO_RESUME_DELAY);
+            }
+        });
+    }
+
+    private long setTextBytes() {
+        return perCall(new Runnable() {
+            int text;
+
+            @Override
+            public void run() {
+                button.setText(text++ % 2 == 0 ? NORMAL : LOADING);
+            }
+        });
+    }
+
+    private long levelBytes() {
+        final Drawable background = button.getBackground();
+        return perCall(new Runnable() {
+            int level;
+
+            @Override
+            public void run() {
+                background.setLevel(level++ % 2);
+            }
+        });
+    }
+
+    /**
+     * Robolectric builds a new accessibility manager for every view accessibility check and
+     * it registers content observers which are never dropped, so text changes would get more
+     * expensive with every call. The observers are dropped after every call.
+     */
+    private long perCall(final Runnable body) {
+        return Allocations.perCall(BINDS, new Runnable() {
+            @Override
+            public void run() {
+                body.run();
+                contentResolver.clearContentObservers();
+            }
+        });
+    }
+}
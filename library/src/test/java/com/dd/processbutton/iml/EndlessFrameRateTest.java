@@ -0,0 +1,196 @@
+package com.dd.processbutton.iml;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Canvas;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.dd.processbutton.Allocations;
+import com.dd.processbutton.BuildConfig;
+import com.dd.processbutton.ProcessButtonMetrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Counts endless indicator invalidations per simulated second under each frame rate policy.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class EndlessFrameRateTest {
+
+    private Activity activity;
+    private TestButtons.FrameCountingButton button;
+    private Scheduler scheduler;
+
+    @Before
+    public void setUp() {
+        FrameLayout container = TestButtons.attachedContainer();
+        activity = (Activity) container.getContext();
+
+        button = new TestButtons.FrameCountingButton(activity);
+        button.setMode(ActionProcessButton.Mode.ENDLESS);
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        scheduler = Robolectric.getForegroundThreadScheduler();
+    }
+
+    @Test
+    public void uncappedRunsAtDrawableRate() {
+        button.setProgress(50);
+
+        assertTrue(framesPerSecond() >= 50);
+    }
+
+    @Test
+    public void maxFpsCapsFrames() {
+        button.setMaxFps(20);
+        button.setProgress(50);
+
+        assertTrue(framesPerSecond() <= 20);
+    }
+
+    @Test
+    public void powerSaveModeLowersFrameRate() {
+        setPowerSaveMode(true);
+        button.setProgress(50);
+
+        int fps = framesPerSecond();
+        assertTrue(fps > 0 && fps <= 10);
+    }
+
+    @Test
+    public void powerSaveModeChangeIsPickedUpWhileRunning() {
+        button.setProgress(50);
+        assertTrue(framesPerSecond() >= 50);
+
+        setPowerSaveMode(true);
+        assertTrue(framesPerSecond() <= 10);
+
+        setPowerSaveMode(false);
+        assertTrue(framesPerSecond() >= 50);
+    }
+
+    @Test
+    public void powerSaveModeIgnoredWhenPolicyDisabled() {
+        button.setPowerSavingPolicyEnabled(false);
+        setPowerSaveMode(true);
+        button.setProgress(50);
+
+        assertTrue(framesPerSecond() >= 50);
+    }
+
+    @Test
+    public void disabledAnimationsDrawStaticIndicator() {
+        Settings.Global.putFloat(activity.getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 0f);
+        button.setProgress(50);
+
+        assertEquals(0, framesPerSecond());
+    }
+
+    @Test
+    public void powerSaveReceiverRegisteredOnlyWhileShown() {
+        assertEquals(0, powerSaveReceiverCount());
+
+        button.setProgress(50);
+        assertEquals(1, powerSaveReceiverCount());
+
+        button.setVisibility(View.GONE);
+        assertEquals(0, powerSaveReceiverCount());
+
+        button.setVisibility(View.VISIBLE);
+        assertEquals(1, powerSaveReceiverCount());
+
+        ((FrameLayout) button.getParent()).removeView(button);
+        assertEquals(0, powerSaveReceiverCount());
+    }
+
+    @Test
+    public void powerSaveReceiverUnregisteredWhenEndlessStops() {
+        button.setProgress(50);
+        assertEquals(1, powerSaveReceiverCount());
+
+        button.setProgress(100);
+        assertEquals(0, powerSaveReceiverCount());
+
+        button.setProgress(50);
+        button.setMode(ActionProcessButton.Mode.PROGRESS);
+        assertEquals(0, powerSaveReceiverCount());
+    }
+
+    @Test
+    public void metricsCountOnlyDrawnAnimationFrames() {
+        ProcessButtonMetrics metrics = new ProcessButtonMetrics();
+        button.setMetricsListener(metrics);
+        Canvas canvas = new Allocations.NoOpCanvas();
+        button.setProgress(50);
+
+        scheduler.advanceBy(100);
+        button.drawProgress(canvas);
+        assertEquals(1, metrics.getEndlessFrames());
+
+        // redraw without a new frame
+        button.drawProgress(canvas);
+        assertEquals(1, metrics.getEndlessFrames());
+
+        button.setVisibility(View.GONE);
+        // Robolectric can't remove the frame which was pending when the button paused
+        scheduler.advanceBy(17);
+        button.drawProgress(canvas);
+        long frames = metrics.getEndlessFrames();
+        scheduler.advanceBy(1000);
+        button.drawProgress(canvas);
+        assertEquals(frames, metrics.getEndlessFrames());
+
+        button.setVisibility(View.VISIBLE);
+        scheduler.advanceBy(100);
+        button.drawProgress(canvas);
+        assertEquals(frames + 1, metrics.getEndlessFrames());
+    }
+
+    @Test
+    public void metricsCountNoFramesOfStaticIndicator() {
+        Settings.Global.putFloat(activity.getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 0f);
+        ProcessButtonMetrics metrics = new ProcessButtonMetrics();
+        button.setMetricsListener(metrics);
+        button.setProgress(50);
+
+        scheduler.advanceBy(1000);
+        button.drawProgress(new Allocations.NoOpCanvas());
+        assertEquals(0, metrics.getEndlessFrames());
+    }
+
+    private int framesPerSecond() {
+        // let the previous rate run out
+        scheduler.advanceBy(200);
+        int frames = button.frames;
+        scheduler.advanceBy(1000);
+        return button.frames - frames;
+    }
+
+    private void setPowerSaveMode(boolean enabled) {
+        PowerManager powerManager = (PowerManager) activity.getSystemService(Context.POWER_SERVICE);
+        shadowOf(powerManager).setIsPowerSaveMode(enabled);
+        activity.sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+    }
+
+    private static int powerSaveReceiverCount() {
+        Intent intent = new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        return shadowOf(RuntimeEnvironment.application).getReceiversForIntent(intent).size();
+    }
+}
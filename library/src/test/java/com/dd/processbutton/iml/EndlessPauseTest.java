@@ -0,0 +1,128 @@
+package com.dd.processbutton.iml;
+
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.dd.processbutton.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Frames of the endless indicator go through the Choreographer, which Robolectric posts to
+ * the main looper scheduler, so an empty scheduler means no frame callback is pending.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class EndlessPauseTest {
+
+    private static final long FRAME_MILLIS = 17;
+
+    private FrameLayout container;
+    private TestButtons.FrameCountingButton button;
+    private Scheduler scheduler;
+
+    @Before
+    public void setUp() {
+        container = TestButtons.attachedContainer();
+        button = new TestButtons.FrameCountingButton(container.getContext());
+        button.setMode(ActionProcessButton.Mode.ENDLESS);
+        scheduler = Robolectric.getForegroundThreadScheduler();
+    }
+
+    @Test
+    public void framesRunWhileShown() {
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        button.setProgress(50);
+
+        assertFramesRun();
+    }
+
+    @Test
+    public void noFramesWhileDetached() {
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        button.setProgress(50);
+        scheduler.advanceBy(100);
+
+        container.removeView(button);
+        assertNoFrames();
+
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        assertFramesRun();
+    }
+
+    @Test
+    public void noFramesWhenStartedDetached() {
+        button.setProgress(50);
+        assertNoFrames();
+
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        assertFramesRun();
+    }
+
+    @Test
+    public void noFramesWhileGone() {
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        button.setProgress(50);
+        scheduler.advanceBy(100);
+
+        button.setVisibility(View.GONE);
+        assertNoFrames();
+
+        button.setVisibility(View.VISIBLE);
+        assertFramesRun();
+    }
+
+    @Test
+    public void noFramesWhileParentGone() {
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        button.setProgress(50);
+        scheduler.advanceBy(100);
+
+        container.setVisibility(View.GONE);
+        assertNoFrames();
+
+        container.setVisibility(View.VISIBLE);
+        assertFramesRun();
+    }
+
+    @Test
+    public void noFramesWhileWindowHidden() {
+        container.addView(button, TestButtons.WIDTH, TestButtons.HEIGHT);
+        button.setProgress(50);
+        scheduler.advanceBy(100);
+
+        TestButtons.setWindowVisibility(container, View.GONE);
+        assertNoFrames();
+
+        TestButtons.setWindowVisibility(container, View.VISIBLE);
+        assertFramesRun();
+    }
+
+    private void assertNoFrames() {
+        // Robolectric posts Choreographer callbacks without their token and can't remove
+        // the frame which was pending when the button paused, let it run out
+        scheduler.advanceBy(FRAME_MILLIS);
+        assertEquals(0, scheduler.size());
+
+        int frames = button.frames;
+        scheduler.advanceBy(1000);
+        assertEquals(0, scheduler.size());
+        assertEquals(frames, button.frames);
+    }
+
+    private void assertFramesRun() {
+        int frames = button.frames;
+        scheduler.advanceBy(1000);
+        assertTrue(scheduler.size() > 0);
+        assertTrue(button.frames > frames);
+    }
+}
@@ -0,0 +1,80 @@
+package com.dd.processbutton.iml;
+
+import android.content.Context;
+import android.graphics.Canvas;
+
+import com.dd.processbutton.Allocations;
+import com.dd.processbutton.BuildConfig;
+import com.dd.processbutton.ProcessButton;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressAllocationTest {
+
+    private static final int ITERATIONS = 10000;
+
+    private final Context context = RuntimeEnvironment.application;
+    private final Canvas canvas = new Allocations.NoOpCanvas();
+
+    @Test
+    public void submitDrawProgressDoesNotAllocate() {
+        assertDrawDoesNotAllocate(TestButtons.layout(new SubmitProcessButton(context)));
+    }
+
+    @Test
+    public void generateDrawProgressDoesNotAllocate() {
+        assertDrawDoesNotAllocate(TestButtons.layout(new GenerateProcessButton(context)));
+    }
+
+    @Test
+    public void actionLineProgressDoesNotAllocate() {
+        ActionProcessButton button = TestButtons.layout(new ActionProcessButton(context));
+        button.setMode(ActionProcessButton.Mode.PROGRESS);
+        assertDrawDoesNotAllocate(button);
+    }
+
+    @Test
+    public void actionEndlessProgressDoesNotAllocate() {
+        ActionProcessButton button = TestButtons.layout(new ActionProcessButton(context));
+        button.setMode(ActionProcessButton.Mode.ENDLESS);
+        assertDrawDoesNotAllocate(button);
+    }
+
+    @Test
+    public void setProgressDoesNotAllocate() {
+        final ProcessButton button = TestButtons.layout(new SubmitProcessButton(context));
+        button.setProgress(1);
+
+        assertEquals(0, Allocations.perCall(ITERATIONS, new Runnable() {
+            int step;
+
+            @Override
+            public void run() {
+                button.setProgress(1 + step++ % 98);
+            }
+        }));
+    }
+
+    private void assertDrawDoesNotAllocate(final ProcessButton button) {
+        button.setProgress(1);
+
+        assertEquals(0, Allocations.perCall(ITERATIONS, new Runnable() {
+            int step;
+
+            @Override
+            public void run() {
+                // move the edge, so every call draws a different fill
+                button.setProgress(1 + step++ % 98);
+                button.drawProgress(canvas);
+            }
+        }));
+    }
+}
@@ -0,0 +1,94 @@
+package com.dd.processbutton.iml;
+
+import android.graphics.Rect;
+
+import com.dd.processbutton.BuildConfig;
+import com.dd.processbutton.ProcessButton;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressDirtyRectTest {
+
+    // bottom 8% of the height
+    private static final int ACTION_BAND_TOP = 55;
+
+    private final Rect rect = new Rect();
+
+    @Test
+    public void submitReportsHorizontalStrip() {
+        SubmitProcessButton button = TestButtons.layout(new SubmitProcessButton(RuntimeEnvironment.application));
+
+        assertTrue(button.getProgressDirtyRect(0f, 0.25f, rect));
+        assertEquals(new Rect(0, 0, 50, TestButtons.HEIGHT), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.25f, 0.5f, rect));
+        assertEquals(new Rect(50, 0, 100, TestButtons.HEIGHT), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.99f, 0.3f, rect));
+        assertEquals(new Rect(60, 0, 198, TestButtons.HEIGHT), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.5f, 0.5f, rect));
+        assertTrue(rect.isEmpty());
+    }
+
+    @Test
+    public void generateReportsVerticalStrip() {
+        GenerateProcessButton button = TestButtons.layout(new GenerateProcessButton(RuntimeEnvironment.application));
+
+        assertTrue(button.getProgressDirtyRect(0f, 0.25f, rect));
+        assertEquals(new Rect(0, 0, TestButtons.WIDTH, 15), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.25f, 0.5f, rect));
+        assertEquals(new Rect(0, 15, TestButtons.WIDTH, 30), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.99f, 0.3f, rect));
+        assertEquals(new Rect(0, 18, TestButtons.WIDTH, 59), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.5f, 0.5f, rect));
+        assertTrue(rect.isEmpty());
+    }
+
+    @Test
+    public void actionProgressModeReportsStripOfBottomBand() {
+        ActionProcessButton button = new ActionProcessButton(RuntimeEnvironment.application);
+        button.setMode(ActionProcessButton.Mode.PROGRESS);
+        TestButtons.layout(button);
+
+        assertTrue(button.getProgressDirtyRect(0f, 0.25f, rect));
+        assertEquals(new Rect(0, ACTION_BAND_TOP, 50, TestButtons.HEIGHT), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.25f, 0.5f, rect));
+        assertEquals(new Rect(50, ACTION_BAND_TOP, 100, TestButtons.HEIGHT), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.99f, 0.3f, rect));
+        assertEquals(new Rect(60, ACTION_BAND_TOP, 198, TestButtons.HEIGHT), rect);
+
+        assertTrue(button.getProgressDirtyRect(0.5f, 0.5f, rect));
+        assertTrue(rect.isEmpty());
+    }
+
+    @Test
+    public void actionEndlessModeReportsNothing() {
+        ActionProcessButton button = new ActionProcessButton(RuntimeEnvironment.application);
+        button.setMode(ActionProcessButton.Mode.ENDLESS);
+        TestButtons.layout(button);
+
+        float[] fractions = {0f, 0.25f, 0.5f, 0.99f};
+        for (float oldFraction : fractions) {
+            for (float newFraction : fractions) {
+                rect.set(1, 1, 2, 2);
+                assertTrue(button.getProgressDirtyRect(oldFraction, newFraction, rect));
+                assertTrue(rect.isEmpty());
+            }
+        }
+    }
+}
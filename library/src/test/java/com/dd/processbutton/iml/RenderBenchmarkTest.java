@@ -0,0 +1,225 @@
+package com.dd.processbutton.iml;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
+
+import com.dd.processbutton.BuildConfig;
+import com.dd.processbutton.ProcessButton;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives every button from 0 to the end of its range and counts per run how many times a
+ * progress tick invalidated the button and requested layout. Counts have to match
+ * {@code render_baseline.json}, more work on the progress path fails the test and so does
+ * less, until the improvement is recorded. Mean tick time of {@code setProgress} plus
+ * {@code draw(Canvas)} is recorded next to the counts but not compared, Robolectric doesn't
+ * render.
+ * <p>
+ * Run with {@code -PrecordRenderBaseline} to write the current results to the baseline.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class RenderBenchmarkTest {
+
+    private static final String BASELINE = "render_baseline.json";
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 48;
+
+    private final Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+
+    @Test
+    public void progressTicksDoNotAddWork() throws Exception {
+        CountingParent parent = new CountingParent(TestButtons.attachedContainer());
+
+        List<Result> results = new ArrayList<>();
+        for (int steps : new int[]{100, 1000}) {
+            results.add(run("submit", new SubmitProcessButton(parent.getContext()), parent, steps));
+            results.add(run("generate", new GenerateProcessButton(parent.getContext()), parent, steps));
+
+            ActionProcessButton action = new ActionProcessButton(parent.getContext());
+            action.setMode(ActionProcessButton.Mode.PROGRESS);
+            results.add(run("action-progress", action, parent, steps));
+
+            action = new ActionProcessButton(parent.getContext());
+            action.setMode(ActionProcessButton.Mode.ENDLESS);
+            results.add(run("action-endless", action, parent, steps));
+        }
+
+        String record = System.getProperty("render.baseline.record");
+        if (record != null) {
+            writeBaseline(new File(record), results);
+            return;
+        }
+
+        JSONObject baseline = readBaseline();
+        StringBuilder mismatches = new StringBuilder();
+        for (Result result : results) {
+            JSONObject base = baseline.optJSONObject(result.name);
+            if (base == null) {
+                mismatches.append(result.name).append(": no baseline\n");
+                continue;
+            }
+            compare(mismatches, result.name, "invalidations", base.getInt("invalidations"), result.invalidations);
+            compare(mismatches, result.name, "layouts", base.getInt("layouts"), result.layouts);
+        }
+        assertEquals("Progress path against " + BASELINE + ", record a new baseline to keep an"
+                + " improvement\n" + results, "", mismatches.toString());
+    }
+
+    /**
+     * @param steps 100 drives the button with {@code setProgress(int)} one percent a tick,
+     * any other value uses {@code setProgress(long, long)} with {@code steps} as total
+     */
+    private Result run(String name, ProcessButton button, CountingParent parent, int steps) {
+        parent.removeAllViews();
+        parent.addView(button, WIDTH, HEIGHT);
+        TestButtons.layout(parent, WIDTH, HEIGHT);
+        button.setProgress(0);
+        draw(button);
+        parent.reset();
+
+        Result result = new Result(name + "-" + steps);
+        long totalNanos = 0;
+        for (int i = 1; i <= steps; i++) {
+            long start = System.nanoTime();
+            if (steps == 100) {
+                button.setProgress(i);
+            } else {
+                button.setProgress((long) i, (long) steps);
+            }
+            if (button.isLayoutRequested()) {
+                TestButtons.layout(parent, WIDTH, HEIGHT);
+            }
+            draw(button);
+            totalNanos += System.nanoTime() - start;
+        }
+
+        result.invalidations = parent.invalidations;
+        result.layouts = parent.layouts;
+        result.meanTickNanos = totalNanos / steps;
+        assertTrue(result.name + " was never drawn", result.meanTickNanos > 0);
+        return result;
+    }
+
+    /**
+     * Robolectric's {@code View.draw} only draws the background and doesn't mark the view as
+     * drawn, so later invalidations would stop before the parent.
+     */
+    private void draw(View view) {
+        Shadow.directlyOn(view, View.class).draw(canvas);
+    }
+
+    private static void compare(StringBuilder mismatches, String name, String count, int base, int value) {
+        if (value != base) {
+            mismatches.append(name).append(": ").append(count).append(' ')
+                    .append(base).append(" -> ").append(value).append('\n');
+        }
+    }
+
+    private JSONObject readBaseline() throws IOException, JSONException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(BASELINE);
+        assertNotNull(BASELINE + " is missing, record it with -PrecordRenderBaseline", in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return new JSONObject(out.toString("UTF-8"));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeBaseline(File file, List<Result> results) throws IOException, JSONException {
+        JSONObject baseline = new JSONObject();
+        for (Result result : results) {
+            baseline.put(result.name, new JSONObject()
+                    .put("invalidations", result.invalidations)
+                    .put("layouts", result.layouts)
+                    .put("meanTickNanos", result.meanTickNanos));
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write((baseline.toString(2) + "\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class Result {
+
+        final String name;
+        int invalidations;
+        int layouts;
+        long meanTickNanos;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": invalidations " + invalidations + ", layouts " + layouts
+                    + ", mean tick " + meanTickNanos + "ns";
+        }
+    }
+
+    /**
+     * Counts what the button under test passes up to its parent, the same for every button
+     * type. Invalidations repeated before the next draw don't reach the parent and aren't
+     * counted.
+     */
+    private static class CountingParent extends FrameLayout {
+
+        int invalidations;
+        int layouts;
+
+        CountingParent(FrameLayout container) {
+            super(container.getContext());
+            container.addView(this);
+        }
+
+        void reset() {
+            invalidations = 0;
+            layouts = 0;
+        }
+
+        @Override
+        public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+            invalidations++;
+            return super.invalidateChildInParent(location, dirty);
+        }
+
+        @Override
+        public void requestLayout() {
+            layouts++;
+            super.requestLayout();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.dd.processbutton.iml;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LevelListDrawable;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Fixtures shared by button tests.
+ */
+final class TestButtons {
+
+    static final int WIDTH = 200;
+    static final int HEIGHT = 60;
+
+    private TestButtons() {
+    }
+
+    static <T extends View> T layout(T view) {
+        return layout(view, WIDTH, HEIGHT);
+    }
+
+    static <T extends View> T layout(T view, int width, int height) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+        return view;
+    }
+
+    /**
+     * @return content view of a started activity with its window reported as visible
+     */
+    static FrameLayout attachedContainer() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout container = new FrameLayout(activity);
+        activity.setContentView(container);
+        // Robolectric doesn't report the window as visible
+        setWindowVisibility(container, View.VISIBLE);
+        return container;
+    }
+
+    static void setWindowVisibility(View attachedView, int visibility) {
+        Object attachInfo = ReflectionHelpers.getField(attachedView, "mAttachInfo");
+        ReflectionHelpers.setField(attachInfo, "mWindowVisibility", visibility);
+        attachedView.getRootView().dispatchWindowVisibilityChanged(visibility);
+    }
+
+    /**
+     * Counts invalidations of the endless drawable, it invalidates itself on every frame.
+     */
+    static class FrameCountingButton extends ActionProcessButton {
+
+        int frames;
+
+        FrameCountingButton(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidateDrawable(Drawable drawable) {
+            if (!(drawable instanceof LevelListDrawable)) {
+                frames++;
+            }
+            super.invalidateDrawable(drawable);
+        }
+    }
+}
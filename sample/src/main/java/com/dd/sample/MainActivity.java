@@ -1,5 +1,7 @@
 package com.dd.sample;
 
+import com.dd.processbutton.ProcessButtons;
+
 import android.app.ListActivity;
 import android.content.Intent;
 import android.os.Bundle;
@@ -12,6 +14,8 @@ public class MainActivity extends ListActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // sample screens are opened from here, build button drawables while the list is shown
+        ProcessButtons.prewarm(this);
 
         String[] items = getResources().getStringArray(R.array.sample_list);
 